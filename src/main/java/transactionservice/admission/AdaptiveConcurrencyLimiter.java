@@ -0,0 +1,88 @@
+package transactionservice.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limiter whose limit follows the observed latency with the
+ * additive increase, multiplicative decrease (AIMD) algorithm. A request which
+ * completes within the target latency while at least half of the limit is in
+ * use increases the limit by one, a request which completes slower than the
+ * target or fails decreases it by the backoff ratio. Requests over the limit
+ * are rejected rather than queued.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class AdaptiveConcurrencyLimiter {
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetLatencyNanos;
+	private final double backoffRatio;
+	private final AtomicInteger inFlight;
+	private volatile double limit;
+
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis,
+			double backoffRatio) {
+		if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Invalid limits: initial " + initialLimit + ", min " + minLimit
+					+ ", max " + maxLimit);
+		}
+		if (backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("Backoff ratio must be between 0 and 1: " + backoffRatio);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.backoffRatio = backoffRatio;
+		this.inFlight = new AtomicInteger();
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * Takes a slot for a request if the limit allows.
+	 * 
+	 * @return true if the request may proceed and must be followed by
+	 *         release(), false if it has to be rejected
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gives back a slot taken by tryAcquire() and adapts the limit to the
+	 * latency of the request.
+	 * 
+	 * @param latencyNanos
+	 *            a time the request took
+	 * @param failed
+	 *            whether the request failed
+	 */
+	public void release(long latencyNanos, boolean failed) {
+		int inFlightBefore = inFlight.getAndDecrement();
+		synchronized (this) {
+			if (failed || latencyNanos > targetLatencyNanos) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			} else if (inFlightBefore * 2 >= limit) {
+				limit = Math.min(maxLimit, limit + 1);
+			}
+		}
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+}
@@ -0,0 +1,165 @@
+package transactionservice.admission;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.StatusEnum;
+
+/**
+ * A servlet filter which protects the transaction endpoints from overload.
+ * Every endpoint class has its own AdaptiveConcurrencyLimiter, and a request
+ * over the limit of its class is rejected at once with 503 and a Retry-After
+ * header. Optionally every client, identified by its remote address, is
+ * limited by a TokenBucket, and a request over the rate is rejected with 429
+ * and a Retry-After header. The buckets of at most MAX_TRACKED_CLIENTS clients
+ * are kept.
+ * 
+ * The X-Client-Id header identifies the client instead of the remote address
+ * only if trustClientIdHeader is set. The header is sent by the client, so it
+ * must only be trusted behind a gateway which sets it and strips the one of
+ * the client; otherwise a client can sidestep its rate by sending a new id
+ * with every request.
+ * 
+ * The limits of a class are configured with the init parameters
+ * &lt;class&gt;.initialLimit, &lt;class&gt;.minLimit, &lt;class&gt;.maxLimit
+ * and &lt;class&gt;.targetLatencyMillis, the client rate with
+ * clientRatePerSecond (0 disables it), clientBurst and trustClientIdHeader.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class AdmissionControlFilter implements Filter {
+	public static final String CLIENT_ID_HEADER = "X-Client-Id";
+	public static final String RETRY_AFTER_HEADER = "Retry-After";
+	public static final String CLIENT_RATE_PARAMETER = "clientRatePerSecond";
+	public static final String CLIENT_BURST_PARAMETER = "clientBurst";
+	public static final String BACKOFF_RATIO_PARAMETER = "backoffRatio";
+	public static final String TRUST_CLIENT_ID_PARAMETER = "trustClientIdHeader";
+	public static final int MAX_TRACKED_CLIENTS = 10000;
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	private Map<EndpointClass, AdaptiveConcurrencyLimiter> limiters;
+	private ClientBucketCache clientBuckets;
+	private double clientRatePerSecond;
+	private boolean trustClientIdHeader;
+
+	@Override
+	public void init(FilterConfig config) throws ServletException {
+		double backoffRatio = getDoubleParameter(config, BACKOFF_RATIO_PARAMETER,
+				AdaptiveConcurrencyLimiter.DEFAULT_BACKOFF_RATIO);
+		limiters = new EnumMap<>(EndpointClass.class);
+		for (EndpointClass endpointClass : EndpointClass.values()) {
+			if (endpointClass == EndpointClass.UNLIMITED) {
+				continue;
+			}
+			String prefix = endpointClass.getName() + ".";
+			limiters.put(endpointClass, new AdaptiveConcurrencyLimiter(
+					(int) getDoubleParameter(config, prefix + "initialLimit", endpointClass.getInitialLimit()),
+					(int) getDoubleParameter(config, prefix + "minLimit", endpointClass.getMinLimit()),
+					(int) getDoubleParameter(config, prefix + "maxLimit", endpointClass.getMaxLimit()),
+					(long) getDoubleParameter(config, prefix + "targetLatencyMillis",
+							endpointClass.getTargetLatencyMillis()),
+					backoffRatio));
+		}
+
+		clientRatePerSecond = getDoubleParameter(config, CLIENT_RATE_PARAMETER, 0);
+		if (clientRatePerSecond > 0) {
+			clientBuckets = new ClientBucketCache(clientRatePerSecond,
+					getDoubleParameter(config, CLIENT_BURST_PARAMETER, Math.max(1, clientRatePerSecond)),
+					MAX_TRACKED_CLIENTS);
+		}
+		trustClientIdHeader = Boolean.parseBoolean(config.getInitParameter(TRUST_CLIENT_ID_PARAMETER));
+	}
+
+	@Override
+	public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+			throws IOException, ServletException {
+		HttpServletRequest request = (HttpServletRequest) servletRequest;
+		HttpServletResponse response = (HttpServletResponse) servletResponse;
+		// the servlet path and the path info are decoded by the container
+		// unlike the request URI, so an escaped path cannot change the class
+		String pathInfo = request.getPathInfo();
+		String path = pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+		EndpointClass endpointClass = EndpointClass.classify(request.getMethod(), path);
+		if (endpointClass == EndpointClass.UNLIMITED) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		if (clientRatePerSecond > 0) {
+			long waitNanos = getClientBucket(request).tryAcquire(System.nanoTime());
+			if (waitNanos > 0) {
+				reject(response, HTTP_TOO_MANY_REQUESTS, waitNanos);
+				return;
+			}
+		}
+
+		AdaptiveConcurrencyLimiter limiter = limiters.get(endpointClass);
+		if (!limiter.tryAcquire()) {
+			reject(response, HttpURLConnection.HTTP_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+			return;
+		}
+
+		long startNanos = System.nanoTime();
+		boolean failed = true;
+		try {
+			chain.doFilter(request, response);
+			// other 5xx, e.g. the 503 of a stale follower, are refusals rather
+			// than failures of the handler and must not cut the limit
+			failed = response.getStatus() == HttpURLConnection.HTTP_INTERNAL_ERROR;
+		} finally {
+			limiter.release(System.nanoTime() - startNanos, failed);
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+	private TokenBucket getClientBucket(HttpServletRequest request) {
+		String clientId = trustClientIdHeader ? request.getHeader(CLIENT_ID_HEADER) : null;
+		if (clientId == null) {
+			clientId = request.getRemoteAddr();
+		}
+		return clientBuckets.getBucket(clientId, System.nanoTime());
+	}
+
+	private void reject(HttpServletResponse response, int status, long retryAfterNanos) throws IOException {
+		long retryAfterSeconds = Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1)
+				/ TimeUnit.SECONDS.toNanos(1));
+		response.setStatus(status);
+		response.setHeader(RETRY_AFTER_HEADER, Long.toString(retryAfterSeconds));
+		response.setContentType("application/json");
+		byte[] body = JSONExporter.getInstance().exportStatusToJSON(StatusEnum.ERROR).toString()
+				.getBytes(StandardCharsets.UTF_8);
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	private double getDoubleParameter(FilterConfig config, String name, double defaultValue) {
+		String value = config.getInitParameter(name);
+		return value == null || value.trim().isEmpty() ? defaultValue : Double.parseDouble(value.trim());
+	}
+
+	/**
+	 * @param endpointClass
+	 *            a class of endpoints
+	 * @return the limiter of the class or null if the class is not limited
+	 */
+	public AdaptiveConcurrencyLimiter getLimiter(EndpointClass endpointClass) {
+		return limiters.get(endpointClass);
+	}
+}
@@ -0,0 +1,62 @@
+package transactionservice.admission;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The token buckets of the clients, bounded to a given number of clients. The
+ * bucket of the least recently seen client is forgotten when a new client
+ * comes in over the bound, so every lookup takes constant time however many
+ * client ids are sent. A forgotten client starts over with a full bucket.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ClientBucketCache {
+	private final double tokensPerSecond;
+	private final double capacity;
+	private final LinkedHashMap<String, TokenBucket> buckets;
+
+	/**
+	 * @param tokensPerSecond
+	 *            a sustained rate of every client
+	 * @param capacity
+	 *            a burst of every client
+	 * @param maxClients
+	 *            a maximum number of clients whose buckets are kept
+	 */
+	public ClientBucketCache(double tokensPerSecond, double capacity, int maxClients) {
+		if (maxClients < 1) {
+			throw new IllegalArgumentException("Maximum number of clients must be positive: " + maxClients);
+		}
+		this.tokensPerSecond = tokensPerSecond;
+		this.capacity = capacity;
+		this.buckets = new LinkedHashMap<String, TokenBucket>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+				return size() > maxClients;
+			}
+		};
+	}
+
+	/**
+	 * @param clientId
+	 *            an id of the client
+	 * @param nowNanos
+	 *            a current value of System.nanoTime()
+	 * @return the bucket of the client, a full one if the client is new
+	 */
+	public synchronized TokenBucket getBucket(String clientId, long nowNanos) {
+		TokenBucket bucket = buckets.get(clientId);
+		if (bucket == null) {
+			bucket = new TokenBucket(tokensPerSecond, capacity, nowNanos);
+			buckets.put(clientId, bucket);
+		}
+		return bucket;
+	}
+
+	public synchronized int size() {
+		return buckets.size();
+	}
+}
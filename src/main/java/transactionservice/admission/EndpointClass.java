@@ -0,0 +1,100 @@
+package transactionservice.admission;
+
+import java.util.regex.Pattern;
+
+/**
+ * An enum with the classes of endpoints which get separate concurrency
+ * limits, so that a burst of expensive requests of one class cannot take the
+ * capacity of cheap requests of another. Every class has default limits and a
+ * default target latency above which its limit is decreased.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public enum EndpointClass {
+	POINT_READ("pointRead", 200, 10, 2000, 50),
+	BATCH_READ("batchRead", 50, 5, 500, 200),
+	WRITE("write", 100, 10, 1000, 100),
+	TYPE_QUERY("typeQuery", 20, 2, 200, 500),
+	SUM("sum", 10, 1, 100, 1000),
+	RANGE("range", 50, 5, 500, 200),
+	UNLIMITED("unlimited", 0, 0, 0, 0);
+
+	private static final Pattern PATH_PARAMETERS = Pattern.compile(";[^/]*");
+
+	private final String name;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetLatencyMillis;
+
+	private EndpointClass(String name, int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis) {
+		this.name = name;
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetLatencyMillis = targetLatencyMillis;
+	}
+
+	/**
+	 * Finds a class of an endpoint by a request.
+	 * 
+	 * @param method
+	 *            an HTTP method of the request
+	 * @param path
+	 *            a decoded path of the request relative to the web
+	 *            application, path parameters of its segments are ignored
+	 * @return a class of the endpoint, UNLIMITED for the paths which are not
+	 *         transaction endpoints
+	 */
+	public static EndpointClass classify(String method, String path) {
+		if (path != null && path.indexOf(';') >= 0) {
+			path = PATH_PARAMETERS.matcher(path).replaceAll("");
+		}
+		if (path == null || !path.startsWith("/transactionservice/")
+				|| path.startsWith("/transactionservice/replication/")) {
+			return UNLIMITED;
+		}
+		if ("PUT".equals(method)) {
+			return WRITE;
+		}
+		if (path.startsWith("/transactionservice/sum/") || path.startsWith("/transactionservice/subtree/")) {
+			return SUM;
+		}
+		if (path.startsWith("/transactionservice/types/")) {
+			return TYPE_QUERY;
+		}
+		if (path.startsWith("/transactionservice/amounts")) {
+			return RANGE;
+		}
+		if (path.startsWith("/transactionservice/transactions")) {
+			return BATCH_READ;
+		}
+		return POINT_READ;
+	}
+
+	/**
+	 * Returns the string representation of the class which prefixes its
+	 * configuration parameters.
+	 *
+	 * @return the string representation of the class.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public long getTargetLatencyMillis() {
+		return targetLatencyMillis;
+	}
+}
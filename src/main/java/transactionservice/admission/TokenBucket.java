@@ -0,0 +1,51 @@
+package transactionservice.admission;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket which admits a sustained rate of requests with bursts up to
+ * its capacity. Tokens are refilled lazily when the bucket is used.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class TokenBucket {
+	private final double capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefillNanos;
+
+	public TokenBucket(double tokensPerSecond, double capacity, long nowNanos) {
+		if (tokensPerSecond <= 0 || capacity < 1) {
+			throw new IllegalArgumentException("Invalid token bucket: rate " + tokensPerSecond + ", capacity "
+					+ capacity);
+		}
+		this.capacity = capacity;
+		this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.tokens = capacity;
+		this.lastRefillNanos = nowNanos;
+	}
+
+	/**
+	 * Takes a token if there is one.
+	 * 
+	 * @param nowNanos
+	 *            a current value of System.nanoTime()
+	 * @return 0 if a token was taken, otherwise a number of nanoseconds until
+	 *         the next token is available
+	 */
+	public synchronized long tryAcquire(long nowNanos) {
+		refill(nowNanos);
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return (long) Math.ceil((1 - tokens) / tokensPerNano);
+	}
+
+	private void refill(long nowNanos) {
+		if (nowNanos > lastRefillNanos) {
+			tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+			lastRefillNanos = nowNanos;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package transactionservice.config;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Reads the settings of the context listeners. A setting is taken from the
+ * system property of its name or, if the property is not set, from the
+ * context parameter of the same name, so that several instances of one war
+ * can be started with different settings on the same host.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public final class ContextParameters {
+
+	private ContextParameters() {
+	}
+
+	/**
+	 * @param context
+	 *            a servlet context with the context parameters
+	 * @param name
+	 *            a name of the setting
+	 * @return the trimmed value of the setting, or null if it is not set or
+	 *         empty
+	 */
+	public static String getParameter(ServletContext context, String name) {
+		String value = System.getProperty(name);
+		if (value == null) {
+			value = context.getInitParameter(name);
+		}
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+	public static int getIntParameter(ServletContext context, String name, int defaultValue) {
+		String value = getParameter(context, name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	public static long getLongParameter(ServletContext context, String name, long defaultValue) {
+		String value = getParameter(context, name);
+		return value == null ? defaultValue : Long.parseLong(value);
+	}
+}
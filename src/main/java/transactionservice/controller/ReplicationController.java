@@ -0,0 +1,141 @@
+package transactionservice.controller;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NavigableMap;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.json.JSONObject;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.ChangeLogEntry;
+import transactionservice.model.StatusEnum;
+import transactionservice.model.TransactionItem;
+import transactionservice.replication.ChangeLog;
+import transactionservice.replication.ReplicationService;
+import transactionservice.service.AmountIndexKey;
+import transactionservice.service.TransactionService;
+
+/**
+ * A controller class to handle replication requests. A leader ships its change
+ * log to the followers on GET, and every instance reports its replication
+ * state on GET.
+ * 
+ * @author Ekaterina Lobanova
+ */
+@Path("/transactionservice/replication")
+public class ReplicationController {
+	public static final int DEFAULT_LOG_LIMIT = 1000;
+	public static final int MAX_LOG_LIMIT = 10000;
+
+	/**
+	 * Reads the change log of a leader starting from a given sequence number.
+	 * If the entries from that number are no longer retained, the first page
+	 * of a snapshot of the store is returned instead. Every entry of a
+	 * snapshot carries the head sequence number the snapshot started at, and
+	 * the next pages are read by passing that head and the next_cursor of the
+	 * previous page. A page holds the current state of its transactions, the
+	 * changes made after the head are read from the log once the last page
+	 * is applied. A follower asks for a snapshot explicitly by reading from 0.
+	 * 
+	 * @param fromSequence
+	 *            a sequence number of the first entry to read
+	 * @param limit
+	 *            a maximum number of entries to read, between 1 and
+	 *            MAX_LOG_LIMIT
+	 * @param headSequence
+	 *            a head sequence number of the snapshot to continue, required
+	 *            with a cursor
+	 * @param cursor
+	 *            a next_cursor value of the previous snapshot page to continue
+	 *            after it
+	 * @return a response containing a JSON object with the head sequence
+	 *         number, the snapshot flag, the entries and, for a snapshot with
+	 *         more pages, a next_cursor property, or an error status if this
+	 *         instance is not a leader or the limit, the head or the cursor
+	 *         are invalid
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/log")
+	public Response getChangeLog(@QueryParam("from") @DefaultValue("1") long fromSequence,
+			@QueryParam("limit") @DefaultValue("" + DEFAULT_LOG_LIMIT) int limit,
+			@QueryParam("head") @DefaultValue("-1") long headSequence, @QueryParam("cursor") String cursor) {
+		ChangeLog changeLog = ReplicationService.getInstance().getChangeLog();
+		if (changeLog == null) {
+			return errorResponse(HttpURLConnection.HTTP_NOT_FOUND);
+		}
+		if (limit < 1 || limit > MAX_LOG_LIMIT) {
+			return errorResponse(HttpURLConnection.HTTP_BAD_REQUEST);
+		}
+
+		if (cursor != null) {
+			AmountIndexKey after;
+			try {
+				after = AmountIndexKey.fromCursor(cursor);
+			} catch (IllegalArgumentException e) {
+				return errorResponse(HttpURLConnection.HTTP_BAD_REQUEST);
+			}
+			if (headSequence < 0) {
+				return errorResponse(HttpURLConnection.HTTP_BAD_REQUEST);
+			}
+			return snapshotResponse(changeLog.getEpoch(), headSequence, after, limit);
+		}
+
+		List<ChangeLogEntry> entries = changeLog.readFrom(fromSequence, limit);
+		if (entries == null) {
+			long snapshotHeadSequence = TransactionService.getInstance()
+					.callWithWritesPaused(changeLog::getHeadSequence);
+			return snapshotResponse(changeLog.getEpoch(), snapshotHeadSequence, null, limit);
+		}
+
+		long logHeadSequence = changeLog.getHeadSequence();
+		StreamingOutput batch = output -> {
+			Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+			JSONExporter.getInstance().exportChangeLogToJSON(changeLog.getEpoch(), logHeadSequence,
+					entries.iterator(), writer);
+			writer.flush();
+		};
+		return Response.status(HttpURLConnection.HTTP_OK).entity(batch).build();
+	}
+
+	/**
+	 * Reports the replication role and state of this instance.
+	 * 
+	 * @return a response in a JSON format with the replication state
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/status")
+	public Response getReplicationStatus() {
+		JSONObject statusAsJSON = ReplicationService.getInstance().exportStatusToJSON();
+		return Response.status(HttpURLConnection.HTTP_OK).entity(statusAsJSON.toString()).build();
+	}
+
+	private Response snapshotResponse(String epoch, long headSequence, AmountIndexKey after, int limit) {
+		NavigableMap<AmountIndexKey, TransactionItem> range = TransactionService.getInstance()
+				.getTransactionsInAmountRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null, after);
+		StreamingOutput page = output -> {
+			Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+			JSONExporter.getInstance().exportSnapshotToJSON(epoch, headSequence, range, limit, writer);
+			writer.flush();
+		};
+		return Response.status(HttpURLConnection.HTTP_OK).entity(page).build();
+	}
+
+	private Response errorResponse(int status) {
+		JSONObject statusAsJSON = JSONExporter.getInstance().exportStatusToJSON(StatusEnum.ERROR);
+		return Response.status(status).entity(statusAsJSON.toString()).build();
+	}
+}
@@ -1,35 +1,65 @@
 package transactionservice.controller;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import transactionservice.exporter.BinaryExporter;
 import transactionservice.exporter.JSONExporter;
 import transactionservice.model.StatusEnum;
 import transactionservice.model.TransactionItem;
+import transactionservice.monitoring.PutTransactionEvent;
+import transactionservice.monitoring.SubtreeExportEvent;
+import transactionservice.service.AmountIndexKey;
 import transactionservice.service.TransactionService;
 
 /**
  * A controller class to handle RESTful requests. The operations supported are
- * returning a transaction by Id on GET, a collection of transactions of a given
- * type on GET, a sum of linked to parent transactions on GET and updating or
- * adding if not present a transaction on PUT.
+ * returning a transaction by Id on GET, several transactions by Id on GET and
+ * POST, a collection of transactions of a given type on GET, a page of
+ * transactions in an amount range on GET, a sum of linked to parent
+ * transactions on GET, a subtree of linked transactions with their sums on GET
+ * and updating or adding if not present a transaction on PUT.
+ * 
+ * Every operation except /amounts and /subtree, which are JSON only, is
+ * available in JSON and in the compact binary format of BinaryExporter. The
+ * format of a response is negotiated through the Accept header and the format
+ * of a PUT body through the Content-Type header.
  * 
  * @author Ekaterina Lobanova
  *
  */
 @Path("/transactionservice")
 public class TransactionsController {
+	public static final int DEFAULT_RANGE_LIMIT = 100;
+	public static final int MAX_RANGE_LIMIT = 1000;
+	public static final String NESTED_FORMAT = "nested";
+	public static final String FLAT_FORMAT = "flat";
+	public static final int MAX_BATCH_SIZE = 1000;
 
 	/**
 	 * Updates a transaction or adds it if not present.
@@ -41,17 +71,51 @@ public class TransactionsController {
 	 * @return a response in a JSON format with the status of operation
 	 */
 	@PUT
+	@Consumes(MediaType.APPLICATION_JSON)
 	@Produces(MediaType.APPLICATION_JSON)
 	@Path("/transaction/{transactionId}")
 	public Response putTransactionWithId(@PathParam("transactionId") long transactionId, String json) {
+		PutTransactionEvent event = new PutTransactionEvent();
+		event.begin();
+		long parseStart = event.isEnabled() ? System.nanoTime() : 0;
 		TransactionItem transactionToPut = JSONExporter.getInstance().exportFromJSON(json);
-		transactionToPut.setTransactionId(transactionId);
-		TransactionService.getInstance().putIfAbsent(transactionId, transactionToPut);
-		TransactionService.getInstance().replace(transactionId, transactionToPut);
+		putTransaction(transactionId, transactionToPut, event, parseStart, false);
 		JSONObject statusAsJSON = JSONExporter.getInstance().exportStatusToJSON(StatusEnum.OK);
 		return Response.status(HttpURLConnection.HTTP_OK).entity(statusAsJSON.toString()).build();
 	}
 
+	/**
+	 * Updates a transaction given in the binary format or adds it if not
+	 * present.
+	 * 
+	 * @param transactionId
+	 *            an id of transaction to update or put
+	 * @param binary
+	 *            a body of a transaction with its properties
+	 * @return a response in the binary format with the status of operation
+	 */
+	@PUT
+	@Consumes(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Produces(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Path("/transaction/{transactionId}")
+	public Response putBinaryTransactionWithId(@PathParam("transactionId") long transactionId, byte[] binary) {
+		PutTransactionEvent event = new PutTransactionEvent();
+		event.begin();
+		long parseStart = event.isEnabled() ? System.nanoTime() : 0;
+		TransactionItem transactionToPut;
+		try {
+			transactionToPut = BinaryExporter.getInstance().exportFromBinary(binary);
+		} catch (IllegalArgumentException e) {
+			return binaryBadRequest();
+		}
+		if (transactionToPut == null) {
+			return binaryBadRequest();
+		}
+		putTransaction(transactionId, transactionToPut, event, parseStart, true);
+		byte[] statusAsBinary = BinaryExporter.getInstance().exportStatusToBinary(StatusEnum.OK);
+		return Response.status(HttpURLConnection.HTTP_OK).entity(statusAsBinary).build();
+	}
+
 	/**
 	 * Retrieves a transaction by id.
 	 * 
@@ -69,6 +133,23 @@ public class TransactionsController {
 		return Response.status(HttpURLConnection.HTTP_OK).entity(transactionResultJSON.toString()).build();
 	}
 
+	/**
+	 * Retrieves a transaction by id in the binary format.
+	 * 
+	 * @param transactionId
+	 *            an id of transaction to retrieve
+	 * @return a response containing transaction with an id matching a query or
+	 *         an absent transaction in the binary format
+	 */
+	@GET
+	@Produces(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Path("/transaction/{transactionId}")
+	public Response getBinaryTransactionById(@PathParam("transactionId") long transactionId) {
+		TransactionItem transactionResult = TransactionService.getInstance().getTransactions().get(transactionId);
+		byte[] transactionResultBinary = BinaryExporter.getInstance().exportTransactionToBinary(transactionResult);
+		return Response.status(HttpURLConnection.HTTP_OK).entity(transactionResultBinary).build();
+	}
+
 	/**
 	 * Produces a json list of all transaction ids that share the same given
 	 * type
@@ -87,6 +168,24 @@ public class TransactionsController {
 		return Response.status(HttpURLConnection.HTTP_OK).entity(transactionsResultJSON.toString()).build();
 	}
 
+	/**
+	 * Produces a binary list of all transaction ids that share the same given
+	 * type
+	 * 
+	 * @param type
+	 *            a type to share
+	 * @return a response containing ids of those transactions which share a
+	 *         given type in the binary format
+	 */
+	@GET
+	@Produces(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Path("/types/{type}")
+	public Response getBinaryTransactionsOfType(@PathParam("type") String type) {
+		Set<Long> matchingTypeSet = TransactionService.getInstance().getTransactionIdsOfType(type);
+		byte[] transactionsResultBinary = BinaryExporter.getInstance().exportIdListToBinary(matchingTypeSet);
+		return Response.status(HttpURLConnection.HTTP_OK).entity(transactionsResultBinary).build();
+	}
+
 	/**
 	 * Gets a sum of all transactions that are transitively linked by their
 	 * parent id to transactionId as a JSON.
@@ -105,4 +204,284 @@ public class TransactionsController {
 		JSONObject sumAsJSON = JSONExporter.getInstance().exportSumToJSON(sum);
 		return Response.status(HttpURLConnection.HTTP_OK).entity(sumAsJSON.toString()).build();
 	}
+
+	/**
+	 * Gets a sum of all transactions that are transitively linked by their
+	 * parent id to transactionId in the binary format.
+	 * 
+	 * @param transactionId
+	 *            a transaction Id to which the transactions participating in
+	 *            sum aggregation are linked
+	 * @return a response with the sum as 8 bytes of a double value
+	 */
+	@GET
+	@Produces(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Path("/sum/{transactionId}")
+	public Response getBinarySumOfTransactionsLinkedTo(@PathParam("transactionId") long transactionId) {
+		double sum = TransactionService.getInstance().getSumOfTransactionsLinkedTo(transactionId);
+		byte[] sumAsBinary = BinaryExporter.getInstance().exportSumToBinary(sum);
+		return Response.status(HttpURLConnection.HTTP_OK).entity(sumAsBinary).build();
+	}
+
+	/**
+	 * Produces a page of transactions with amount between two bounds, sorted
+	 * by amount. The page is read from the amount index and streamed out, so
+	 * the cost depends on the page size and not on the size of the store.
+	 * 
+	 * @param fromAmount
+	 *            the lowest amount of the range, unbounded if omitted
+	 * @param toAmount
+	 *            the highest amount of the range, unbounded if omitted
+	 * @param type
+	 *            a type the transactions have to share, any type if omitted
+	 * @param limit
+	 *            a maximum number of transactions on the page, between 1 and
+	 *            MAX_RANGE_LIMIT
+	 * @param cursor
+	 *            a next_cursor value of a previous page to continue after it
+	 * @return a response containing a JSON object with an array of
+	 *         transactions and a next_cursor property if there are more of
+	 *         them, or an error status if the limit or the cursor are invalid
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/amounts")
+	public Response getTransactionsInAmountRange(@QueryParam("from") Double fromAmount,
+			@QueryParam("to") Double toAmount, @QueryParam("type") String type,
+			@QueryParam("limit") @DefaultValue("" + DEFAULT_RANGE_LIMIT) int limit,
+			@QueryParam("cursor") String cursor) {
+		if (limit < 1 || limit > MAX_RANGE_LIMIT) {
+			return badRequest();
+		}
+
+		AmountIndexKey after = null;
+		if (cursor != null) {
+			try {
+				after = AmountIndexKey.fromCursor(cursor);
+			} catch (IllegalArgumentException e) {
+				return badRequest();
+			}
+		}
+
+		NavigableMap<AmountIndexKey, TransactionItem> range = TransactionService.getInstance()
+				.getTransactionsInAmountRange(fromAmount == null ? Double.NEGATIVE_INFINITY : fromAmount,
+						toAmount == null ? Double.POSITIVE_INFINITY : toAmount, type, after);
+		StreamingOutput page = output -> {
+			Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+			JSONExporter.getInstance().exportAmountRangeToJSON(range, limit, writer);
+			writer.flush();
+		};
+		return Response.status(HttpURLConnection.HTTP_OK).entity(page).build();
+	}
+
+	/**
+	 * Exports all transactions that are transitively linked by their parent id
+	 * to transactionId together with the sum of every subtree, as /sum/{id}
+	 * would report it for each of them. The subtree is traversed once and
+	 * streamed out while it is traversed.
+	 * 
+	 * @param transactionId
+	 *            an id of the root transaction
+	 * @param format
+	 *            nested for a tree of JSON objects, flat for an array with
+	 *            every transaction after its children
+	 * @return a response containing the subtree in a JSON format or an error
+	 *         status if the format is unknown
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/subtree/{transactionId}")
+	public Response getSubtreeOf(@PathParam("transactionId") long transactionId,
+			@QueryParam("format") @DefaultValue(NESTED_FORMAT) String format) {
+		if (!NESTED_FORMAT.equals(format) && !FLAT_FORMAT.equals(format)) {
+			return badRequest();
+		}
+
+		StreamingOutput subtree = output -> {
+			SubtreeExportEvent event = new SubtreeExportEvent();
+			event.begin();
+			Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			long visitedCount;
+			try {
+				visitedCount = TransactionService.getInstance().visitSubtree(transactionId,
+						JSONExporter.getInstance().createSubtreeJSONWriter(writer, NESTED_FORMAT.equals(format)));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			writer.flush();
+			if (event.shouldCommit()) {
+				event.setRootId(transactionId);
+				event.setVisitedNodes(visitedCount);
+				event.setFormat(format);
+				event.commit();
+			}
+		};
+		return Response.status(HttpURLConnection.HTTP_OK).entity(subtree).build();
+	}
+
+	/**
+	 * Retrieves several transactions by id given as a comma separated list.
+	 * 
+	 * @param ids
+	 *            a comma separated list of ids, at most MAX_BATCH_SIZE of them
+	 * @return a response containing a JSON object with the found transactions
+	 *         keyed by id and an array of missing ids, or an error status if
+	 *         the list is malformed or too long
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/transactions")
+	public Response getTransactionsByIds(@QueryParam("ids") String ids) {
+		Set<Long> transactionIds = parseIdList(ids);
+		if (transactionIds == null) {
+			return badRequest();
+		}
+		return transactionsByIdAsJSON(transactionIds);
+	}
+
+	/**
+	 * Retrieves several transactions by id given as a JSON array in the body.
+	 * 
+	 * @param json
+	 *            a JSON array of ids, at most MAX_BATCH_SIZE of them
+	 * @return a response containing a JSON object with the found transactions
+	 *         keyed by id and an array of missing ids, or an error status if
+	 *         the array is malformed or too long
+	 */
+	@POST
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/transactions")
+	public Response postTransactionsByIds(String json) {
+		Set<Long> transactionIds;
+		try {
+			transactionIds = JSONExporter.getInstance().exportIdListFromJSON(json);
+		} catch (JSONException e) {
+			return badRequest();
+		}
+		if (transactionIds.size() > MAX_BATCH_SIZE) {
+			return badRequest();
+		}
+		return transactionsByIdAsJSON(transactionIds);
+	}
+
+	/**
+	 * Retrieves several transactions by id given as a comma separated list in
+	 * the binary format.
+	 * 
+	 * @param ids
+	 *            a comma separated list of ids, at most MAX_BATCH_SIZE of them
+	 * @return a response containing every requested id with its transaction or
+	 *         an absent transaction in the binary format, or an error status
+	 *         if the list is malformed or too long
+	 */
+	@GET
+	@Produces(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Path("/transactions")
+	public Response getBinaryTransactionsByIds(@QueryParam("ids") String ids) {
+		Set<Long> transactionIds = parseIdList(ids);
+		if (transactionIds == null) {
+			return binaryBadRequest();
+		}
+		return transactionsByIdAsBinary(transactionIds);
+	}
+
+	/**
+	 * Retrieves several transactions by id given as a binary id list in the
+	 * body.
+	 * 
+	 * @param binary
+	 *            a binary id list, at most MAX_BATCH_SIZE ids
+	 * @return a response containing every requested id with its transaction or
+	 *         an absent transaction in the binary format, or an error status
+	 *         if the list is malformed or too long
+	 */
+	@POST
+	@Consumes(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Produces(BinaryExporter.APPLICATION_TRANSACTION_BINARY)
+	@Path("/transactions")
+	public Response postBinaryTransactionsByIds(byte[] binary) {
+		Set<Long> transactionIds;
+		try {
+			transactionIds = BinaryExporter.getInstance().exportIdListFromBinary(binary);
+		} catch (IllegalArgumentException e) {
+			return binaryBadRequest();
+		}
+		if (transactionIds.size() > MAX_BATCH_SIZE) {
+			return binaryBadRequest();
+		}
+		return transactionsByIdAsBinary(transactionIds);
+	}
+
+	private Response transactionsByIdAsJSON(Set<Long> transactionIds) {
+		Map<Long, TransactionItem> foundTransactions = TransactionService.getInstance()
+				.getTransactionsByIds(transactionIds);
+		StreamingOutput result = output -> {
+			Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+			JSONExporter.getInstance().exportTransactionsByIdToJSON(transactionIds, foundTransactions, writer);
+			writer.flush();
+		};
+		return Response.status(HttpURLConnection.HTTP_OK).entity(result).build();
+	}
+
+	private Response transactionsByIdAsBinary(Set<Long> transactionIds) {
+		Map<Long, TransactionItem> foundTransactions = TransactionService.getInstance()
+				.getTransactionsByIds(transactionIds);
+		byte[] result = BinaryExporter.getInstance().exportTransactionsByIdToBinary(transactionIds,
+				foundTransactions);
+		return Response.status(HttpURLConnection.HTTP_OK).entity(result).build();
+	}
+
+	/**
+	 * Parses a comma separated list of ids.
+	 * 
+	 * @return the ids in the list order without duplicates, or null if the
+	 *         list is missing, malformed or longer than MAX_BATCH_SIZE
+	 */
+	private Set<Long> parseIdList(String ids) {
+		if (ids == null) {
+			return null;
+		}
+
+		Set<Long> transactionIds = new LinkedHashSet<>();
+		try {
+			for (String id : ids.split(",")) {
+				if (!id.trim().isEmpty()) {
+					transactionIds.add(Long.parseLong(id.trim()));
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return transactionIds.size() > MAX_BATCH_SIZE ? null : transactionIds;
+	}
+
+	private Response binaryBadRequest() {
+		byte[] statusAsBinary = BinaryExporter.getInstance().exportStatusToBinary(StatusEnum.ERROR);
+		return Response.status(HttpURLConnection.HTTP_BAD_REQUEST).entity(statusAsBinary).build();
+	}
+
+	/**
+	 * Stores a parsed transaction under transactionId, adding it if absent and
+	 * replacing it otherwise, and commits the PUT event which was begun before
+	 * the request body was parsed.
+	 */
+	private void putTransaction(long transactionId, TransactionItem transactionToPut, PutTransactionEvent event,
+			long parseStart, boolean binary) {
+		long parseTime = event.isEnabled() ? System.nanoTime() - parseStart : 0;
+		transactionToPut.setTransactionId(transactionId);
+		TransactionService.getInstance().putIfAbsent(transactionId, transactionToPut);
+		TransactionService.getInstance().replace(transactionId, transactionToPut);
+		if (event.shouldCommit()) {
+			event.setTransactionId(transactionId);
+			event.setParseTime(parseTime);
+			event.setBinary(binary);
+			event.commit();
+		}
+	}
+
+	private Response badRequest() {
+		JSONObject statusAsJSON = JSONExporter.getInstance().exportStatusToJSON(StatusEnum.ERROR);
+		return Response.status(HttpURLConnection.HTTP_BAD_REQUEST).entity(statusAsJSON.toString()).build();
+	}
 }
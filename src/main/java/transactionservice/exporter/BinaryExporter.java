@@ -0,0 +1,310 @@
+package transactionservice.exporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import transactionservice.model.StatusEnum;
+import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.service.TransactionService;
+
+/**
+ * A class which exports the model objects into a compact binary
+ * representation. It is an alternative to the JSONExporter for clients which
+ * negotiate the APPLICATION_TRANSACTION_BINARY media type.
+ *
+ * Ids and counts are written as unsigned variable-length integers (7 bits per
+ * byte, the high bit marks continuation), amounts and sums as 8 byte IEEE 754
+ * doubles and strings as a variable-length byte count followed by UTF-8 bytes.
+ * A transaction starts with a flags byte telling which properties follow.
+ *
+ * @author Ekaterina Lobanova
+ */
+public class BinaryExporter {
+	public static final String APPLICATION_TRANSACTION_BINARY = "application/x-transaction-binary";
+
+	public static final int PRESENT_FLAG = 0x01;
+	public static final int PARENT_ID_FLAG = 0x02;
+	public static final int TYPE_FLAG = 0x04;
+
+	private static BinaryExporter instance = null;
+
+	private BinaryExporter() {
+	}
+
+	public static BinaryExporter getInstance() {
+		if (instance == null) {
+			synchronized (BinaryExporter.class) {
+				if (instance == null) {
+					instance = new BinaryExporter();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Exports an instance of TransactionItem to the binary format.
+	 *
+	 * @param transactionItem
+	 *            an item to export
+	 * @return a binary representation of transaction with its properties or a
+	 *         single flags byte with no flags set if transaction is null
+	 */
+	public byte[] exportTransactionToBinary(TransactionItem transactionItem) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			writeTransaction(output, transactionItem);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Builds a binary representation of the sum.
+	 *
+	 * @param sum
+	 *            a value of the sum
+	 * @return 8 bytes of the sum value
+	 */
+	public byte[] exportSumToBinary(double sum) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeDouble(sum);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Exports a set of transaction ids to the binary format.
+	 *
+	 * @param transactionIds
+	 *            a set with ids to export
+	 * @return a count of ids followed by the ids, or a zero count if the set
+	 *         is null
+	 */
+	public byte[] exportIdListToBinary(Set<Long> transactionIds) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			if (transactionIds == null) {
+				writeVarLong(output, 0);
+			} else {
+				writeVarLong(output, transactionIds.size());
+				for (Long transactionId : transactionIds) {
+					writeVarLong(output, transactionId);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Exports the result of a multi-id lookup to the binary format: a count
+	 * of ids followed by every id with its transaction, where a missing
+	 * transaction is written as a flags byte with no flags set.
+	 *
+	 * @param transactionIds
+	 *            the requested ids without duplicates
+	 * @param foundTransactions
+	 *            the found transactions keyed by id
+	 * @return a binary representation of the lookup result
+	 */
+	public byte[] exportTransactionsByIdToBinary(Collection<Long> transactionIds,
+			Map<Long, TransactionItem> foundTransactions) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			writeVarLong(output, transactionIds.size());
+			for (Long transactionId : transactionIds) {
+				writeVarLong(output, transactionId);
+				writeTransaction(output, foundTransactions.get(transactionId));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Constructs the result of a multi-id lookup from its binary
+	 * representation.
+	 *
+	 * @param binary
+	 *            bytes as written by exportTransactionsByIdToBinary
+	 * @return a map from every requested id to its transaction or to null if
+	 *         it was missing, in the requested order
+	 * @throws IllegalArgumentException
+	 *             if the bytes are truncated or malformed
+	 */
+	public Map<Long, TransactionItem> exportTransactionsByIdFromBinary(byte[] binary) {
+		Map<Long, TransactionItem> transactions = new LinkedHashMap<>();
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(binary))) {
+			long count = readVarLong(input);
+			for (long i = 0; i < count; i++) {
+				long transactionId = readVarLong(input);
+				TransactionItem transaction = readTransaction(input);
+				if (transaction != null) {
+					transaction.setTransactionId(transactionId);
+				}
+				transactions.put(transactionId, transaction);
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Malformed binary lookup result", e);
+		}
+		return transactions;
+	}
+
+	/**
+	 * Exports a status to the binary format.
+	 *
+	 * @param status
+	 *            a status enum to export
+	 * @return a single byte with the status ordinal or an empty array if
+	 *         status is null
+	 */
+	public byte[] exportStatusToBinary(StatusEnum status) {
+		if (status == null) {
+			return new byte[0];
+		}
+		return new byte[] { (byte) status.ordinal() };
+	}
+
+	/**
+	 * Constructs an instance of TransactionItem from its binary
+	 * representation.
+	 *
+	 * @param binary
+	 *            bytes of a transaction as written by exportTransactionToBinary
+	 * @return a configured instance of TransactionItem or null if the bytes
+	 *         are null or describe an absent transaction
+	 * @throws IllegalArgumentException
+	 *             if the bytes are truncated or malformed
+	 */
+	public TransactionItem exportFromBinary(byte[] binary) {
+		if (binary == null) {
+			return null;
+		}
+
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(binary))) {
+			return readTransaction(input);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Malformed binary transaction", e);
+		}
+	}
+
+	/**
+	 * Constructs a set of transaction ids from its binary representation.
+	 *
+	 * @param binary
+	 *            bytes of an id list as written by exportIdListToBinary
+	 * @return a set of ids in the written order or an empty set if the bytes
+	 *         are null
+	 * @throws IllegalArgumentException
+	 *             if the bytes are truncated or malformed
+	 */
+	public Set<Long> exportIdListFromBinary(byte[] binary) {
+		Set<Long> transactionIds = new LinkedHashSet<>();
+		if (binary == null) {
+			return transactionIds;
+		}
+
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(binary))) {
+			long count = readVarLong(input);
+			for (long i = 0; i < count; i++) {
+				transactionIds.add(readVarLong(input));
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Malformed binary id list", e);
+		}
+		return transactionIds;
+	}
+
+	void writeTransaction(DataOutputStream output, TransactionItem transactionItem) throws IOException {
+		if (transactionItem == null) {
+			output.writeByte(0);
+			return;
+		}
+
+		long parentId = transactionItem.getParentId();
+		String type = transactionItem.getType();
+		int flags = PRESENT_FLAG;
+		if (parentId != TransactionService.ABSENT_ID) {
+			flags |= PARENT_ID_FLAG;
+		}
+		if (type != null) {
+			flags |= TYPE_FLAG;
+		}
+
+		output.writeByte(flags);
+		output.writeDouble(transactionItem.getAmount());
+		if ((flags & PARENT_ID_FLAG) != 0) {
+			writeVarLong(output, parentId);
+		}
+		if ((flags & TYPE_FLAG) != 0) {
+			byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(output, typeBytes.length);
+			output.write(typeBytes);
+		}
+	}
+
+	TransactionItem readTransaction(DataInputStream input) throws IOException {
+		int flags = input.readUnsignedByte();
+		if ((flags & PRESENT_FLAG) == 0) {
+			return null;
+		}
+
+		TransactionItemBuilder builder = new TransactionItemBuilder();
+		builder.setAmount(input.readDouble());
+		if ((flags & PARENT_ID_FLAG) != 0) {
+			builder.setParentId(readVarLong(input));
+		}
+		if ((flags & TYPE_FLAG) != 0) {
+			long typeLength = readVarLong(input);
+			// the length comes from the client, so it is checked against the
+			// bytes which are actually there before anything is allocated
+			if (typeLength < 0 || typeLength > input.available()) {
+				throw new IOException("Type length " + typeLength + " exceeds the remaining bytes");
+			}
+			byte[] typeBytes = new byte[(int) typeLength];
+			input.readFully(typeBytes);
+			builder.setType(new String(typeBytes, StandardCharsets.UTF_8));
+		}
+
+		return builder.build();
+	}
+
+	void writeVarLong(DataOutputStream output, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		output.writeByte((int) value);
+	}
+
+	long readVarLong(DataInputStream input) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Variable-length integer is too long");
+	}
+}
@@ -1,13 +1,27 @@
 package transactionservice.exporter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
+import transactionservice.model.ChangeLogEntry;
 import transactionservice.model.StatusEnum;
 import transactionservice.model.TransactionItem;
 import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.service.AmountIndexKey;
+import transactionservice.service.SubtreeVisitor;
 import transactionservice.service.TransactionService;
 
 /**
@@ -21,6 +35,26 @@ public class JSONExporter {
 	public static final String PARENT_ID_PROPERTY = "parent_id";
 	public static final String STATUS_PROPERTY = "status";
 	public static final String SUM_PROPERTY = "sum";
+	public static final String TRANSACTION_ID_PROPERTY = "transaction_id";
+	public static final String TRANSACTIONS_PROPERTY = "transactions";
+	public static final String NEXT_CURSOR_PROPERTY = "next_cursor";
+	public static final String EPOCH_PROPERTY = "epoch";
+	public static final String HEAD_PROPERTY = "head";
+	public static final String SNAPSHOT_PROPERTY = "snapshot";
+	public static final String ENTRIES_PROPERTY = "entries";
+	public static final String SEQUENCE_PROPERTY = "sequence";
+	public static final String REMOVED_PROPERTY = "removed";
+	public static final String ROLE_PROPERTY = "role";
+	public static final String OLDEST_PROPERTY = "oldest";
+	public static final String LEADER_URL_PROPERTY = "leader_url";
+	public static final String APPLIED_PROPERTY = "applied";
+	public static final String LEADER_HEAD_PROPERTY = "leader_head";
+	public static final String LAG_MILLIS_PROPERTY = "lag_millis";
+	public static final String LAG_ENTRIES_PROPERTY = "lag_entries";
+	public static final String MAX_LAG_MILLIS_PROPERTY = "max_lag_millis";
+	public static final String LAST_ERROR_PROPERTY = "last_error";
+	public static final String CHILDREN_PROPERTY = "children";
+	public static final String MISSING_PROPERTY = "missing";
 
 	private static JSONExporter instance = null;
 
@@ -60,6 +94,278 @@ public class JSONExporter {
 		return transactionAsJson;
 	}
 
+	/**
+	 * Writes a page of an amount range to a writer as a JSON object with an
+	 * array of transactions in the range order and, if the range has more
+	 * transactions than the page holds, a cursor to continue after the page.
+	 * The transactions are written one by one as they are iterated.
+	 * 
+	 * @param range
+	 *            an ordered range of transactions keyed by amount index keys
+	 * @param limit
+	 *            a maximum number of transactions on the page
+	 * @param writer
+	 *            a writer to write the JSON to
+	 */
+	public void exportAmountRangeToJSON(NavigableMap<AmountIndexKey, TransactionItem> range, int limit,
+			Writer writer) {
+		JSONWriter jsonWriter = new JSONWriter(writer);
+		jsonWriter.object().key(TRANSACTIONS_PROPERTY).array();
+		Iterator<Entry<AmountIndexKey, TransactionItem>> iterator = range.entrySet().iterator();
+		AmountIndexKey lastKey = null;
+		for (int count = 0; count < limit && iterator.hasNext(); count++) {
+			Entry<AmountIndexKey, TransactionItem> entry = iterator.next();
+			lastKey = entry.getKey();
+			writeTransaction(jsonWriter, lastKey.getTransactionId(), entry.getValue());
+		}
+		jsonWriter.endArray();
+
+		if (lastKey != null && iterator.hasNext()) {
+			jsonWriter.key(NEXT_CURSOR_PROPERTY).value(lastKey.toCursor());
+		}
+		jsonWriter.endObject();
+	}
+
+	/**
+	 * Writes a part of a change log to a writer as a JSON object with the
+	 * epoch and the head sequence number of the log, a snapshot flag which is
+	 * not set, and an array of entries in the log order. An entry holds the
+	 * sequence number, the transaction id and either the transaction
+	 * properties or the removed flag.
+	 * 
+	 * @param epoch
+	 *            an epoch of the log, which changes when the leader restarts
+	 * @param headSequence
+	 *            a sequence number of the last change in the log
+	 * @param entries
+	 *            entries to write
+	 * @param writer
+	 *            a writer to write the JSON to
+	 */
+	public void exportChangeLogToJSON(String epoch, long headSequence, Iterator<ChangeLogEntry> entries,
+			Writer writer) {
+		JSONWriter jsonWriter = new JSONWriter(writer);
+		jsonWriter.object().key(EPOCH_PROPERTY).value(epoch).key(HEAD_PROPERTY).value(headSequence);
+		jsonWriter.key(SNAPSHOT_PROPERTY).value(false).key(ENTRIES_PROPERTY).array();
+		while (entries.hasNext()) {
+			ChangeLogEntry entry = entries.next();
+			jsonWriter.object().key(SEQUENCE_PROPERTY).value(entry.getSequence());
+			jsonWriter.key(TRANSACTION_ID_PROPERTY).value(entry.getTransactionId());
+			if (entry.isRemoval()) {
+				jsonWriter.key(REMOVED_PROPERTY).value(true);
+			} else {
+				writeTransactionProperties(jsonWriter, entry.getTransaction());
+			}
+			jsonWriter.endObject();
+		}
+		jsonWriter.endArray().endObject();
+	}
+
+	/**
+	 * Writes a page of a snapshot of the store to a writer in the format of
+	 * exportChangeLogToJSON() with the snapshot flag set. The page holds the
+	 * transactions of an amount range in the range order, every entry carries
+	 * the head sequence number the snapshot is pinned to, and if the range has
+	 * more transactions than the page holds, a cursor to continue after the
+	 * page is added.
+	 * 
+	 * @param epoch
+	 *            an epoch of the log, which changes when the leader restarts
+	 * @param headSequence
+	 *            a sequence number of the log the snapshot started at
+	 * @param range
+	 *            an ordered range of transactions keyed by amount index keys
+	 * @param limit
+	 *            a maximum number of transactions on the page
+	 * @param writer
+	 *            a writer to write the JSON to
+	 */
+	public void exportSnapshotToJSON(String epoch, long headSequence,
+			NavigableMap<AmountIndexKey, TransactionItem> range, int limit, Writer writer) {
+		JSONWriter jsonWriter = new JSONWriter(writer);
+		jsonWriter.object().key(EPOCH_PROPERTY).value(epoch).key(HEAD_PROPERTY).value(headSequence);
+		jsonWriter.key(SNAPSHOT_PROPERTY).value(true).key(ENTRIES_PROPERTY).array();
+		Iterator<Entry<AmountIndexKey, TransactionItem>> iterator = range.entrySet().iterator();
+		AmountIndexKey lastKey = null;
+		for (int count = 0; count < limit && iterator.hasNext(); count++) {
+			Entry<AmountIndexKey, TransactionItem> entry = iterator.next();
+			lastKey = entry.getKey();
+			jsonWriter.object().key(SEQUENCE_PROPERTY).value(headSequence);
+			jsonWriter.key(TRANSACTION_ID_PROPERTY).value(lastKey.getTransactionId());
+			writeTransactionProperties(jsonWriter, entry.getValue());
+			jsonWriter.endObject();
+		}
+		jsonWriter.endArray();
+
+		if (lastKey != null && iterator.hasNext()) {
+			jsonWriter.key(NEXT_CURSOR_PROPERTY).value(lastKey.toCursor());
+		}
+		jsonWriter.endObject();
+	}
+
+	/**
+	 * Creates a visitor which writes a subtree of transactions to a writer as
+	 * it is traversed. Every transaction is written with its id, properties
+	 * and the sum of its subtree. In the nested form the root is a JSON object
+	 * whose children property holds the objects of its children, and so on.
+	 * In the flat form the transactions are written in a transactions array
+	 * of a JSON object, every transaction after all of its children. The JSON
+	 * is written without any limit on the nesting depth.
+	 * 
+	 * @param writer
+	 *            a writer to write the JSON to
+	 * @param nested
+	 *            whether to write the nested or the flat form
+	 * @return a visitor to pass to TransactionService.visitSubtree(); it
+	 *         throws UncheckedIOException if the writer fails
+	 */
+	public SubtreeVisitor createSubtreeJSONWriter(Writer writer, boolean nested) {
+		return new SubtreeJSONWriter(writer, nested);
+	}
+
+	/**
+	 * A visitor which streams a subtree in the nested or the flat JSON form.
+	 */
+	private static class SubtreeJSONWriter implements SubtreeVisitor {
+		private final Writer writer;
+		private final boolean nested;
+		private int depth;
+		private boolean firstInArray;
+
+		SubtreeJSONWriter(Writer writer, boolean nested) {
+			this.writer = writer;
+			this.nested = nested;
+			this.depth = 0;
+			this.firstInArray = true;
+		}
+
+		@Override
+		public void enter(long transactionId, TransactionItem transaction) {
+			try {
+				if (nested) {
+					if (!firstInArray) {
+						writer.write(',');
+					}
+					writeNode(transactionId, transaction);
+					writer.write(",\"" + CHILDREN_PROPERTY + "\":[");
+					firstInArray = true;
+				} else if (depth == 0) {
+					writer.write("{\"" + TRANSACTIONS_PROPERTY + "\":[");
+				}
+				depth++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void exit(long transactionId, TransactionItem transaction, double sum) {
+			try {
+				depth--;
+				if (nested) {
+					writer.write("],");
+				} else {
+					if (!firstInArray) {
+						writer.write(',');
+					}
+					writeNode(transactionId, transaction);
+					writer.write(',');
+				}
+				writer.write("\"" + SUM_PROPERTY + "\":" + JSONObject.numberToString(sum) + "}");
+				firstInArray = false;
+				if (!nested && depth == 0) {
+					writer.write("]}");
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void writeNode(long transactionId, TransactionItem transaction) throws IOException {
+			writer.write("{\"" + TRANSACTION_ID_PROPERTY + "\":" + transactionId);
+			if (transaction == null) {
+				return;
+			}
+
+			long parentId = transaction.getParentId();
+			if (parentId != TransactionService.ABSENT_ID) {
+				writer.write(",\"" + PARENT_ID_PROPERTY + "\":" + parentId);
+			}
+			writer.write(",\"" + AMOUNT_PROPERTY + "\":" + JSONObject.numberToString(transaction.getAmount()));
+			if (transaction.getType() != null) {
+				writer.write(",\"" + TYPE_PROPERTY + "\":" + JSONObject.quote(transaction.getType()));
+			}
+		}
+	}
+
+	private void writeTransaction(JSONWriter jsonWriter, long transactionId, TransactionItem transactionItem) {
+		jsonWriter.object().key(TRANSACTION_ID_PROPERTY).value(transactionId);
+		writeTransactionProperties(jsonWriter, transactionItem);
+		jsonWriter.endObject();
+	}
+
+	private void writeTransactionProperties(JSONWriter jsonWriter, TransactionItem transactionItem) {
+		long parentId = transactionItem.getParentId();
+		if (parentId != TransactionService.ABSENT_ID) {
+			jsonWriter.key(PARENT_ID_PROPERTY).value(parentId);
+		}
+		jsonWriter.key(AMOUNT_PROPERTY).value(transactionItem.getAmount());
+		if (transactionItem.getType() != null) {
+			jsonWriter.key(TYPE_PROPERTY).value(transactionItem.getType());
+		}
+	}
+
+	/**
+	 * Writes the result of a multi-id lookup to a writer as a JSON object with
+	 * a transactions object, in which every found transaction is keyed by its
+	 * id, and a missing array with the ids which were not found.
+	 * 
+	 * @param transactionIds
+	 *            the requested ids without duplicates
+	 * @param foundTransactions
+	 *            the found transactions keyed by id
+	 * @param writer
+	 *            a writer to write the JSON to
+	 */
+	public void exportTransactionsByIdToJSON(Collection<Long> transactionIds,
+			Map<Long, TransactionItem> foundTransactions, Writer writer) {
+		JSONWriter jsonWriter = new JSONWriter(writer);
+		jsonWriter.object().key(TRANSACTIONS_PROPERTY).object();
+		for (Long transactionId : transactionIds) {
+			TransactionItem transactionItem = foundTransactions.get(transactionId);
+			if (transactionItem != null) {
+				jsonWriter.key(String.valueOf(transactionId)).object();
+				writeTransactionProperties(jsonWriter, transactionItem);
+				jsonWriter.endObject();
+			}
+		}
+		jsonWriter.endObject().key(MISSING_PROPERTY).array();
+		for (Long transactionId : transactionIds) {
+			if (!foundTransactions.containsKey(transactionId)) {
+				jsonWriter.value(transactionId.longValue());
+			}
+		}
+		jsonWriter.endArray().endObject();
+	}
+
+	/**
+	 * Exports a JSON array of transaction ids to a set.
+	 * 
+	 * @param json
+	 *            a string containing a JSON array of ids
+	 * @return a set with the ids in the array order without duplicates
+	 * @throws JSONException
+	 *             if the string is not a JSON array of numbers
+	 */
+	public Set<Long> exportIdListFromJSON(String json) {
+		JSONArray idsAsJson = new JSONArray(json);
+		Set<Long> transactionIds = new LinkedHashSet<>();
+		for (int i = 0; i < idsAsJson.length(); i++) {
+			transactionIds.add(idsAsJson.getLong(i));
+		}
+		return transactionIds;
+	}
+
 	/**
 	 * Builds a JSON object with the sum property.
 	 * 
@@ -116,7 +422,22 @@ public class JSONExporter {
 			return null;
 		}
 
-		JSONObject jsonObject = new JSONObject(json);
+		return exportFromJSONObject(new JSONObject(json));
+	}
+
+	/**
+	 * Constructs an instance of TransactionItem from a JSON object
+	 * 
+	 * @param jsonObject
+	 *            a JSON representation of a transaction
+	 * @return a configured instance of TransactionItem or null if object is
+	 *         null
+	 */
+	public TransactionItem exportFromJSONObject(JSONObject jsonObject) {
+		if (jsonObject == null) {
+			return null;
+		}
+
 		TransactionItemBuilder builder = new TransactionItemBuilder();
 		if (jsonObject.has(AMOUNT_PROPERTY)) {
 			builder.setAmount(jsonObject.getDouble(AMOUNT_PROPERTY));
@@ -0,0 +1,38 @@
+package transactionservice.model;
+
+/**
+ * An entry of the replication change log: a new state of one transaction together with the
+ * position of the change in the log.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ChangeLogEntry {
+	private final long sequence;
+	private final long transactionId;
+	private final TransactionItem transaction;
+
+	public ChangeLogEntry(long sequence, long transactionId, TransactionItem transaction) {
+		this.sequence = sequence;
+		this.transactionId = transactionId;
+		this.transaction = transaction;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * @return a new state of the transaction or null if it was removed
+	 */
+	public TransactionItem getTransaction() {
+		return transaction;
+	}
+
+	public boolean isRemoval() {
+		return transaction == null;
+	}
+}
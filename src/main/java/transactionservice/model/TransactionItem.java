@@ -10,12 +10,15 @@ public class TransactionItem {
 	private double amount;
 	private long transactionId;
 	private long parentId;
+	private long ingestTime;
+	private long version;
 
 	public TransactionItem(TransactionItemBuilder builder) {
 		this.type = builder.type;
 		this.amount = builder.amount;
 		this.transactionId = builder.transactionId;
 		this.parentId = builder.parentId;
+		this.ingestTime = builder.ingestTime;
 	}
 
 	public String getType() {
@@ -50,6 +53,31 @@ public class TransactionItem {
 		this.parentId = parentId;
 	}
 
+	/**
+	 * @return the time in milliseconds since the epoch when the transaction
+	 *         was stored, or 0 if it has not been stored yet
+	 */
+	public long getIngestTime() {
+		return ingestTime;
+	}
+
+	public void setIngestTime(long ingestTime) {
+		this.ingestTime = ingestTime;
+	}
+
+	/**
+	 * @return a number which the service assigns to this instance when it is
+	 *         stored and which no other stored version of the transaction
+	 *         gets, or 0 if it has not been stored yet
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	/**
 	 * A builder class for TransactionItemBuilder to avoid unreadable setter
 	 * calls.
@@ -61,6 +89,7 @@ public class TransactionItem {
 		private double amount;
 		private long transactionId;
 		private long parentId;
+		private long ingestTime;
 
 		public TransactionItemBuilder setType(String type) {
 			this.type = type;
@@ -82,6 +111,11 @@ public class TransactionItem {
 			return this;
 		}
 
+		public TransactionItemBuilder setIngestTime(long ingestTime) {
+			this.ingestTime = ingestTime;
+			return this;
+		}
+
 		public TransactionItem build() {
 			return new TransactionItem(this);
 		}
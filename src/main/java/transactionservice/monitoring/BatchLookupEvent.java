@@ -0,0 +1,36 @@
+package transactionservice.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Several transactions were looked up by id.
+ * 
+ * @author Ekaterina Lobanova
+ */
+@Name("transactionservice.BatchLookup")
+@Label("Batch Lookup")
+@Description("Several transactions were looked up by id.")
+@Category({ "Transaction Service" })
+@StackTrace(false)
+@Threshold("5 ms")
+public class BatchLookupEvent extends Event {
+	@Label("Requested Ids")
+	private int requestedIds;
+
+	@Label("Found Transactions")
+	private int foundTransactions;
+
+	public void setRequestedIds(int requestedIds) {
+		this.requestedIds = requestedIds;
+	}
+
+	public void setFoundTransactions(int foundTransactions) {
+		this.foundTransactions = foundTransactions;
+	}
+}
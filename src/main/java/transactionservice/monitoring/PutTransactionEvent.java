@@ -0,0 +1,45 @@
+package transactionservice.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * A transaction was added or updated on PUT.
+ * 
+ * @author Ekaterina Lobanova
+ */
+@Name("transactionservice.PutTransaction")
+@Label("Put Transaction")
+@Description("A transaction was added or updated on PUT.")
+@Category({ "Transaction Service" })
+@StackTrace(false)
+@Threshold("1 ms")
+public class PutTransactionEvent extends Event {
+	@Label("Transaction Id")
+	private long transactionId;
+
+	@Label("Parse Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long parseTime;
+
+	@Label("Binary")
+	private boolean binary;
+
+	public void setTransactionId(long transactionId) {
+		this.transactionId = transactionId;
+	}
+
+	public void setParseTime(long parseTime) {
+		this.parseTime = parseTime;
+	}
+
+	public void setBinary(boolean binary) {
+		this.binary = binary;
+	}
+}
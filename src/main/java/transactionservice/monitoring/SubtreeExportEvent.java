@@ -0,0 +1,43 @@
+package transactionservice.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A subtree of the transactions linked to a root transaction was exported.
+ * 
+ * @author Ekaterina Lobanova
+ */
+@Name("transactionservice.SubtreeExport")
+@Label("Subtree Export")
+@Description("A subtree of the transactions linked to a root transaction was exported.")
+@Category({ "Transaction Service" })
+@StackTrace(false)
+@Threshold("100 ms")
+public class SubtreeExportEvent extends Event {
+	@Label("Root Id")
+	private long rootId;
+
+	@Label("Visited Nodes")
+	private long visitedNodes;
+
+	@Label("Format")
+	private String format;
+
+	public void setRootId(long rootId) {
+		this.rootId = rootId;
+	}
+
+	public void setVisitedNodes(long visitedNodes) {
+		this.visitedNodes = visitedNodes;
+	}
+
+	public void setFormat(String format) {
+		this.format = format;
+	}
+}
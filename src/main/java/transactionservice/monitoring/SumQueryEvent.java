@@ -0,0 +1,36 @@
+package transactionservice.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A sum of the transactions linked to a root transaction was calculated.
+ * 
+ * @author Ekaterina Lobanova
+ */
+@Name("transactionservice.SumQuery")
+@Label("Sum Query")
+@Description("A sum of the transactions linked to a root transaction was calculated.")
+@Category({ "Transaction Service" })
+@StackTrace(false)
+@Threshold("10 ms")
+public class SumQueryEvent extends Event {
+	@Label("Root Id")
+	private long rootId;
+
+	@Label("Visited Nodes")
+	private long visitedNodes;
+
+	public void setRootId(long rootId) {
+		this.rootId = rootId;
+	}
+
+	public void setVisitedNodes(long visitedNodes) {
+		this.visitedNodes = visitedNodes;
+	}
+}
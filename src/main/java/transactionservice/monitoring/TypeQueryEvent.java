@@ -0,0 +1,36 @@
+package transactionservice.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The ids of the transactions of a type were collected.
+ * 
+ * @author Ekaterina Lobanova
+ */
+@Name("transactionservice.TypeQuery")
+@Label("Type Query")
+@Description("The ids of the transactions of a type were collected.")
+@Category({ "Transaction Service" })
+@StackTrace(false)
+@Threshold("10 ms")
+public class TypeQueryEvent extends Event {
+	@Label("Type")
+	private String type;
+
+	@Label("Result Size")
+	private int resultSize;
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public void setResultSize(int resultSize) {
+		this.resultSize = resultSize;
+	}
+}
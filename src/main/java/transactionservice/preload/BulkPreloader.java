@@ -0,0 +1,343 @@
+package transactionservice.preload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.preload.PreloadReport.RejectedLine;
+import transactionservice.replication.ChangeLog;
+import transactionservice.replication.ReplicationService;
+import transactionservice.service.TransactionService;
+
+/**
+ * Loads transactions from NDJSON or CSV export files straight into the
+ * TransactionService. Every file is split into chunks on line boundaries, the
+ * chunks are memory-mapped and parsed in parallel, and the indexes are built
+ * in bulk once all rows are in the map.
+ * 
+ * An NDJSON line is a JSON object with the transaction_id, amount, type and
+ * parent_id properties. A CSV line has the columns transaction_id, amount,
+ * type and parent_id, of which type and parent_id may be empty or missing, and
+ * a first line starting with transaction_id is taken for a header. Values of
+ * a CSV line must not contain commas.
+ * 
+ * An id may occur on several lines, e.g. in a replayed history. The row which
+ * comes last in the order of the files and of the lines within a file wins,
+ * however the chunks are scheduled: every stored row carries the index of its
+ * chunk, and a row of an earlier chunk does not replace a row of a later one.
+ * Within a chunk the lines are stored in order. A row of a later preload
+ * replaces any row of an earlier one.
+ * 
+ * A preload must not run concurrently with other writes to the service.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class BulkPreloader {
+	public static final int MAX_REPORTED_REJECTED_LINES = 1000;
+	public static final long DEFAULT_CHUNK_BYTES = 64L << 20;
+	private static final String CSV_HEADER_PREFIX = JSONExporter.TRANSACTION_ID_PROPERTY;
+	private static final int BOUNDARY_SCAN_BYTES = 8192;
+	// chunks are numbered across all preloads, so that the rows of a later
+	// preload replace the rows of an earlier one
+	private static final AtomicLong CHUNK_INDEXES = new AtomicLong();
+
+	private final int parallelism;
+	private final long chunkBytes;
+
+	public BulkPreloader() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+	}
+
+	/**
+	 * @param parallelism
+	 *            a number of threads parsing the chunks
+	 * @param chunkBytes
+	 *            a maximum size of a chunk; a chunk is extended to the end of
+	 *            its last line
+	 */
+	public BulkPreloader(int parallelism, long chunkBytes) {
+		if (parallelism < 1 || chunkBytes < 1 || chunkBytes > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("Invalid preloader: parallelism " + parallelism + ", chunk bytes "
+					+ chunkBytes);
+		}
+		this.parallelism = parallelism;
+		this.chunkBytes = chunkBytes;
+	}
+
+	/**
+	 * Loads all rows of the given files. The format of a file is chosen by its
+	 * extension: .csv for CSV, .ndjson, .jsonl or .json for NDJSON.
+	 * 
+	 * @param files
+	 *            files to load
+	 * @return a report with the numbers of loaded and rejected rows
+	 * @throws IOException
+	 *             if a file cannot be read
+	 * @throws IllegalArgumentException
+	 *             if a file has an unknown extension
+	 */
+	public PreloadReport preload(List<Path> files) throws IOException {
+		long startNanos = System.nanoTime();
+		List<Chunk> chunks = new ArrayList<>();
+		for (Path file : files) {
+			split(file, Format.fromPath(file), chunks);
+		}
+
+		List<ChunkResult> results = loadInParallel(chunks);
+		TransactionService.getInstance().rebuildIndexes();
+		ChangeLog changeLog = ReplicationService.getInstance().getChangeLog();
+		if (changeLog != null) {
+			changeLog.truncate();
+		}
+
+		long loadedRows = 0;
+		long rejectedRows = 0;
+		List<RejectedLine> rejectedLines = new ArrayList<>();
+		long firstLineOfChunk = 1;
+		for (int i = 0; i < results.size(); i++) {
+			Chunk chunk = chunks.get(i);
+			ChunkResult result = results.get(i);
+			if (chunk.start == 0) {
+				firstLineOfChunk = 1;
+			}
+
+			loadedRows += result.loadedRows;
+			rejectedRows += result.rejectedRows;
+			for (int j = 0; j < result.rejectedLineIndexes.size()
+					&& rejectedLines.size() < MAX_REPORTED_REJECTED_LINES; j++) {
+				rejectedLines.add(new RejectedLine(chunk.file,
+						firstLineOfChunk + result.rejectedLineIndexes.get(j), result.rejectedReasons.get(j)));
+			}
+			firstLineOfChunk += result.lineCount;
+		}
+		return new PreloadReport(loadedRows, rejectedRows, System.nanoTime() - startNanos, rejectedLines);
+	}
+
+	private List<ChunkResult> loadInParallel(List<Chunk> chunks) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.submit(() -> chunks.parallelStream().map(this::load).collect(Collectors.toList())).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Preload was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			throw new IOException("Preload failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Splits a file into chunks which end right after a line feed or at the
+	 * end of the file and appends them to a list.
+	 */
+	private void split(Path file, Format format, List<Chunk> chunks) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long start = 0;
+			ByteBuffer scanBuffer = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES);
+			while (start < size) {
+				long end = Math.min(size, start + chunkBytes);
+				if (end < size) {
+					end = findLineEnd(channel, end - 1, size, scanBuffer);
+				}
+				chunks.add(new Chunk(CHUNK_INDEXES.incrementAndGet(), file, format, start, end));
+				start = end;
+			}
+		}
+	}
+
+	private long findLineEnd(FileChannel channel, long position, long size, ByteBuffer scanBuffer)
+			throws IOException {
+		while (position < size) {
+			scanBuffer.clear();
+			int read = channel.read(scanBuffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (scanBuffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private ChunkResult load(Chunk chunk) {
+		ChunkResult result = new ChunkResult();
+		try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+			byte[] lineBytes = new byte[256];
+			int lineStart = 0;
+			int limit = buffer.limit();
+			for (int i = 0; i <= limit; i++) {
+				if (i < limit && buffer.get(i) != '\n') {
+					continue;
+				}
+				if (i == limit && i == lineStart) {
+					break;
+				}
+
+				int lineLength = i - lineStart;
+				if (lineLength > 0 && buffer.get(i - 1) == '\r') {
+					lineLength--;
+				}
+				if (lineBytes.length < lineLength) {
+					lineBytes = new byte[Math.max(lineLength, lineBytes.length * 2)];
+				}
+				buffer.position(lineStart);
+				buffer.get(lineBytes, 0, lineLength);
+				loadLine(chunk, new String(lineBytes, 0, lineLength, StandardCharsets.UTF_8), result);
+				result.lineCount++;
+				lineStart = i + 1;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return result;
+	}
+
+	private void loadLine(Chunk chunk, String line, ChunkResult result) {
+		if (line.trim().isEmpty()) {
+			return;
+		}
+		if (chunk.format == Format.CSV && chunk.start == 0 && result.lineCount == 0
+				&& line.startsWith(CSV_HEADER_PREFIX)) {
+			return;
+		}
+
+		try {
+			TransactionItemBuilder builder = chunk.format == Format.CSV ? parseCSV(line) : parseNDJSON(line);
+			ChunkRow row = new ChunkRow(chunk.index, builder);
+			if (row.getTransactionId() == TransactionService.ABSENT_ID) {
+				result.reject("missing transaction id");
+				return;
+			}
+			TransactionService.getInstance().putWithoutIndexing(row,
+					current -> !(current instanceof ChunkRow) || ((ChunkRow) current).chunkIndex <= chunk.index);
+			result.loadedRows++;
+		} catch (JSONException | IllegalArgumentException e) {
+			result.reject(String.valueOf(e.getMessage()));
+		}
+	}
+
+	private TransactionItemBuilder parseNDJSON(String line) {
+		JSONObject jsonObject = new JSONObject(line);
+		TransactionItem transaction = JSONExporter.getInstance().exportFromJSONObject(jsonObject);
+		long transactionId = jsonObject.optLong(JSONExporter.TRANSACTION_ID_PROPERTY, TransactionService.ABSENT_ID);
+		return new TransactionItemBuilder().setTransactionId(transactionId).setAmount(transaction.getAmount())
+				.setType(transaction.getType()).setParentId(transaction.getParentId());
+	}
+
+	private TransactionItemBuilder parseCSV(String line) {
+		String[] fields = line.split(",", -1);
+		if (fields.length < 2 || fields.length > 4) {
+			throw new IllegalArgumentException("expected 2 to 4 columns but found " + fields.length);
+		}
+
+		TransactionItemBuilder builder = new TransactionItemBuilder().setTransactionId(Long.parseLong(fields[0].trim()))
+				.setAmount(Double.parseDouble(fields[1].trim()));
+		if (fields.length > 2 && !fields[2].trim().isEmpty()) {
+			builder.setType(fields[2].trim());
+		}
+		if (fields.length > 3 && !fields[3].trim().isEmpty()) {
+			builder.setParentId(Long.parseLong(fields[3].trim()));
+		}
+		return builder;
+	}
+
+	/**
+	 * A format of an input file.
+	 */
+	private enum Format {
+		NDJSON, CSV;
+
+		static Format fromPath(Path file) {
+			String name = file.getFileName().toString().toLowerCase();
+			if (name.endsWith(".csv")) {
+				return CSV;
+			}
+			if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+				return NDJSON;
+			}
+			throw new IllegalArgumentException("Unknown preload file format: " + file);
+		}
+	}
+
+	/**
+	 * A range of bytes of a file which starts at the beginning of a line and
+	 * ends after a line feed or at the end of the file.
+	 */
+	private static class Chunk {
+		private final long index;
+		private final Path file;
+		private final Format format;
+		private final long start;
+		private final long end;
+
+		Chunk(long index, Path file, Format format, long start, long end) {
+			this.index = index;
+			this.file = file;
+			this.format = format;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * A loaded transaction which remembers the index of its chunk, so that a
+	 * row of an earlier chunk can be told from a row of a later one without a
+	 * separate map of all ids.
+	 */
+	private static class ChunkRow extends TransactionItem {
+		private final long chunkIndex;
+
+		ChunkRow(long chunkIndex, TransactionItemBuilder builder) {
+			super(builder);
+			this.chunkIndex = chunkIndex;
+		}
+	}
+
+	/**
+	 * The counts of a loaded chunk with the rejected lines numbered from 0
+	 * within the chunk.
+	 */
+	private static class ChunkResult {
+		private long lineCount;
+		private long loadedRows;
+		private long rejectedRows;
+		private final List<Long> rejectedLineIndexes = new ArrayList<>();
+		private final List<String> rejectedReasons = new ArrayList<>();
+
+		void reject(String reason) {
+			rejectedRows++;
+			if (rejectedLineIndexes.size() < MAX_REPORTED_REJECTED_LINES) {
+				rejectedLineIndexes.add(lineCount);
+				rejectedReasons.add(reason);
+			}
+		}
+	}
+}
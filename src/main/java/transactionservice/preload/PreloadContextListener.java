@@ -0,0 +1,67 @@
+package transactionservice.preload;
+
+import static transactionservice.config.ContextParameters.getParameter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import transactionservice.preload.PreloadReport.RejectedLine;
+import transactionservice.replication.ReplicationService;
+
+/**
+ * Preloads the transactions from export files when the web application
+ * starts, before it serves requests. The files are given as a comma separated
+ * list in a system property or, if it is not set, in a context parameter of
+ * the same name. The report and the rejected lines are written to the
+ * servlet context log.
+ * 
+ * A follower does not preload: its store is replaced by the leader snapshot
+ * anyway, and its follower thread is already running when this listener is
+ * called, so a preload would write concurrently with the replication.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class PreloadContextListener implements ServletContextListener {
+	public static final String FILES_PARAMETER = "transactionservice.preload.files";
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		ServletContext context = event.getServletContext();
+		String files = getParameter(context, FILES_PARAMETER);
+		if (files == null) {
+			return;
+		}
+		if (ReplicationService.getInstance().isReadOnly()) {
+			context.log("Preload of " + files + " is skipped on a replication follower");
+			return;
+		}
+
+		List<Path> paths = new ArrayList<>();
+		for (String file : files.split(",")) {
+			if (!file.trim().isEmpty()) {
+				paths.add(Paths.get(file.trim()));
+			}
+		}
+
+		try {
+			PreloadReport report = new BulkPreloader().preload(paths);
+			context.log(report.toString());
+			for (RejectedLine rejectedLine : report.getRejectedLines()) {
+				context.log("Rejected " + rejectedLine);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Preload of " + paths + " failed", e);
+		}
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+	}
+}
@@ -0,0 +1,92 @@
+package transactionservice.preload;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A result of a bulk preload: how many rows were loaded and rejected, how long
+ * it took and which lines were rejected. Only the first rejected lines are
+ * kept, up to BulkPreloader.MAX_REPORTED_REJECTED_LINES.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class PreloadReport {
+	private final long loadedRows;
+	private final long rejectedRows;
+	private final long elapsedNanos;
+	private final List<RejectedLine> rejectedLines;
+
+	public PreloadReport(long loadedRows, long rejectedRows, long elapsedNanos, List<RejectedLine> rejectedLines) {
+		this.loadedRows = loadedRows;
+		this.rejectedRows = rejectedRows;
+		this.elapsedNanos = elapsedNanos;
+		this.rejectedLines = Collections.unmodifiableList(rejectedLines);
+	}
+
+	public long getLoadedRows() {
+		return loadedRows;
+	}
+
+	public long getRejectedRows() {
+		return rejectedRows;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public List<RejectedLine> getRejectedLines() {
+		return rejectedLines;
+	}
+
+	/**
+	 * @return loaded rows per second of the whole preload, including the index
+	 *         construction
+	 */
+	public double getRowsPerSecond() {
+		return elapsedNanos == 0 ? 0 : loadedRows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Preloaded %d rows in %d ms (%.0f rows/sec), rejected %d lines", loadedRows,
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRowsPerSecond(), rejectedRows);
+	}
+
+	/**
+	 * A line of an input file which could not be loaded.
+	 */
+	public static class RejectedLine {
+		private final Path file;
+		private final long lineNumber;
+		private final String reason;
+
+		public RejectedLine(Path file, long lineNumber, String reason) {
+			this.file = file;
+			this.lineNumber = lineNumber;
+			this.reason = reason;
+		}
+
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * @return a number of the line in its file, starting with 1
+		 */
+		public long getLineNumber() {
+			return lineNumber;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+
+		@Override
+		public String toString() {
+			return file + ":" + lineNumber + ": " + reason;
+		}
+	}
+}
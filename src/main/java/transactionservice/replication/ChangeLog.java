@@ -0,0 +1,128 @@
+package transactionservice.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import transactionservice.model.ChangeLogEntry;
+import transactionservice.model.TransactionItem;
+import transactionservice.service.TransactionChangeListener;
+
+/**
+ * An ordered log of the changes of the transactions map which a leader ships
+ * to its followers. Each change gets the next sequence number, starting with
+ * 1. Only the last changes up to a given capacity are retained; a follower
+ * which is further behind has to start over from a snapshot.
+ * 
+ * Every log gets a random epoch when it is created, so that a follower can
+ * tell the log of a restarted leader from the one it has been following, even
+ * if the new log has reached the same sequence numbers.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ChangeLog implements TransactionChangeListener {
+	private final String epoch;
+	private final int capacity;
+	private final ConcurrentNavigableMap<Long, ChangeLogEntry> entries;
+	private volatile long headSequence;
+	private volatile long oldestSequence;
+
+	public ChangeLog(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Change log capacity must be positive: " + capacity);
+		}
+		this.epoch = UUID.randomUUID().toString();
+		this.capacity = capacity;
+		this.entries = new ConcurrentSkipListMap<>();
+		this.headSequence = 0;
+		this.oldestSequence = 1;
+	}
+
+	@Override
+	public void transactionChanged(long transactionId, TransactionItem transaction) {
+		append(transactionId, transaction);
+	}
+
+	/**
+	 * Appends a change to the log. Appending is serialized, so an entry is
+	 * visible to readers only after all entries before it.
+	 * 
+	 * @param transactionId
+	 *            an id of the changed transaction
+	 * @param transaction
+	 *            a new value of the transaction or null if it was removed
+	 * @return a sequence number of the change
+	 */
+	public synchronized long append(long transactionId, TransactionItem transaction) {
+		long sequence = headSequence + 1;
+		entries.put(sequence, new ChangeLogEntry(sequence, transactionId, transaction));
+		headSequence = sequence;
+		while (headSequence - oldestSequence >= capacity) {
+			entries.remove(oldestSequence);
+			oldestSequence++;
+		}
+		return sequence;
+	}
+
+	/**
+	 * Drops all retained entries and advances the head past them, so that
+	 * every follower, including one which has seen the head or which has not
+	 * read anything yet, has to start over from a snapshot. It is used after
+	 * the store was changed without the change log being notified.
+	 */
+	public synchronized void truncate() {
+		entries.clear();
+		headSequence++;
+		oldestSequence = headSequence + 1;
+	}
+
+	/**
+	 * Reads the entries starting from a given sequence number.
+	 * 
+	 * @param fromSequence
+	 *            a sequence number of the first entry to read
+	 * @param limit
+	 *            a maximum number of entries to read
+	 * @return the entries in the log order, an empty list if there are no
+	 *         entries from fromSequence yet, or null if the entries from
+	 *         fromSequence are no longer retained or fromSequence is beyond the
+	 *         head of this log (the reader followed a previous incarnation of
+	 *         the leader)
+	 */
+	public List<ChangeLogEntry> readFrom(long fromSequence, int limit) {
+		List<ChangeLogEntry> result = new ArrayList<>();
+		if (fromSequence < oldestSequence || fromSequence > headSequence + 1) {
+			return null;
+		}
+
+		for (ChangeLogEntry entry : entries.tailMap(fromSequence).values()) {
+			if (result.size() >= limit) {
+				break;
+			}
+			result.add(entry);
+		}
+
+		if (fromSequence < oldestSequence) {
+			return null;
+		}
+		return result;
+	}
+
+	public String getEpoch() {
+		return epoch;
+	}
+
+	public long getHeadSequence() {
+		return headSequence;
+	}
+
+	public long getOldestSequence() {
+		return oldestSequence;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+}
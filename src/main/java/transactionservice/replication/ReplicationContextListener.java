@@ -0,0 +1,62 @@
+package transactionservice.replication;
+
+import static transactionservice.config.ContextParameters.getIntParameter;
+import static transactionservice.config.ContextParameters.getLongParameter;
+import static transactionservice.config.ContextParameters.getParameter;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Starts replication when the web application starts and stops it when the
+ * application stops. The settings are read from the system properties and,
+ * if a property is not set, from the context parameters of the same name, so
+ * that several instances of one war can run as a leader and followers on the
+ * same host.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ReplicationContextListener implements ServletContextListener {
+	public static final String ROLE_PARAMETER = "transactionservice.replication.role";
+	public static final String LEADER_URL_PARAMETER = "transactionservice.replication.leaderUrl";
+	public static final String LOG_CAPACITY_PARAMETER = "transactionservice.replication.logCapacity";
+	public static final String POLL_INTERVAL_PARAMETER = "transactionservice.replication.pollIntervalMillis";
+	public static final String BATCH_SIZE_PARAMETER = "transactionservice.replication.batchSize";
+	public static final String MAX_LAG_PARAMETER = "transactionservice.replication.maxLagMillis";
+
+	public static final int DEFAULT_LOG_CAPACITY = 100000;
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 100;
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	public static final long DEFAULT_MAX_LAG_MILLIS = 5000;
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		ServletContext context = event.getServletContext();
+		ReplicationRole role = ReplicationRole.fromName(getParameter(context, ROLE_PARAMETER));
+		switch (role) {
+		case LEADER:
+			ReplicationService.getInstance()
+					.startLeader(getIntParameter(context, LOG_CAPACITY_PARAMETER, DEFAULT_LOG_CAPACITY));
+			break;
+		case FOLLOWER:
+			String leaderUrl = getParameter(context, LEADER_URL_PARAMETER);
+			if (leaderUrl == null) {
+				throw new IllegalStateException(LEADER_URL_PARAMETER + " is required for a follower");
+			}
+			ReplicationService.getInstance().startFollower(leaderUrl,
+					getLongParameter(context, POLL_INTERVAL_PARAMETER, DEFAULT_POLL_INTERVAL_MILLIS),
+					getIntParameter(context, BATCH_SIZE_PARAMETER, DEFAULT_BATCH_SIZE),
+					getLongParameter(context, MAX_LAG_PARAMETER, DEFAULT_MAX_LAG_MILLIS));
+			break;
+		default:
+			break;
+		}
+		context.log("Replication role: " + role.getName());
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		ReplicationService.getInstance().stop();
+	}
+}
@@ -0,0 +1,90 @@
+package transactionservice.replication;
+
+import java.net.HttpURLConnection;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.json.JSONObject;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.StatusEnum;
+
+/**
+ * A Jersey filter which enforces the follower rules on the transaction
+ * endpoints: writes are refused with 403 (a POST of the multi-id lookup is a
+ * read, not a write), reads are refused with 503 and a
+ * Retry-After header while the replication lag exceeds the bound, and every
+ * response of a follower reports the current lag in a header. The replication
+ * endpoints themselves are not filtered.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ReplicationFilter implements ContainerRequestFilter, ContainerResponseFilter {
+	public static final String LAG_HEADER = "X-Replication-Lag-Millis";
+	public static final String RETRY_AFTER_HEADER = "Retry-After";
+	private static final String REPLICATION_PATH = "transactionservice/replication";
+	private static final String BATCH_LOOKUP_PATH = "transactionservice/transactions";
+
+	@Override
+	public ContainerRequest filter(ContainerRequest request) {
+		ReplicationService replication = ReplicationService.getInstance();
+		if (!replication.isReadOnly() || request.getPath().startsWith(REPLICATION_PATH)) {
+			return request;
+		}
+
+		if (!isRead(request.getMethod(), request.getPath())) {
+			throw new WebApplicationException(errorResponse(HttpURLConnection.HTTP_FORBIDDEN).build());
+		}
+
+		if (replication.isStale()) {
+			ReplicationFollower follower = replication.getFollower();
+			long retryAfterSeconds = follower == null ? 1
+					: Math.max(1, (follower.getPollIntervalMillis() + 999) / 1000);
+			throw new WebApplicationException(errorResponse(HttpURLConnection.HTTP_UNAVAILABLE)
+					.header(RETRY_AFTER_HEADER, retryAfterSeconds).build());
+		}
+		return request;
+	}
+
+	@Override
+	public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+		ReplicationFollower follower = ReplicationService.getInstance().getFollower();
+		if (follower != null) {
+			response.getHttpHeaders().putSingle(LAG_HEADER, follower.getLagMillis());
+		}
+		return response;
+	}
+
+	/**
+	 * Tells whether a request only reads the transactions.
+	 * 
+	 * @param method
+	 *            an HTTP method of the request
+	 * @param path
+	 *            a path of the request relative to the application
+	 * @return true if the request may be served by a follower
+	 */
+	public static boolean isRead(String method, String path) {
+		if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+			return true;
+		}
+		String normalizedPath = path.startsWith("/") ? path.substring(1) : path;
+		if (normalizedPath.endsWith("/")) {
+			normalizedPath = normalizedPath.substring(0, normalizedPath.length() - 1);
+		}
+		return HttpMethod.POST.equals(method) && BATCH_LOOKUP_PATH.equals(normalizedPath);
+	}
+
+	private Response.ResponseBuilder errorResponse(int status) {
+		JSONObject statusAsJSON = JSONExporter.getInstance().exportStatusToJSON(StatusEnum.ERROR);
+		return Response.status(status).type(MediaType.APPLICATION_JSON).entity(statusAsJSON.toString());
+	}
+}
@@ -0,0 +1,306 @@
+package transactionservice.replication;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.TransactionItem;
+import transactionservice.service.AmountIndexKey;
+import transactionservice.service.TransactionService;
+
+/**
+ * A task which pulls the change log of a leader and applies it to the local
+ * TransactionService. It polls the leader continuously while it is behind and
+ * every poll interval once it has caught up. The replication lag is the time
+ * elapsed since the start of the last poll which found the follower caught up
+ * with the head of the leader log.
+ * 
+ * The follower remembers the epoch of the leader log. A batch of another epoch
+ * comes from a restarted leader whose sequence numbers have nothing to do with
+ * the applied ones, so it is dropped and the follower starts over from a
+ * snapshot.
+ * 
+ * A snapshot is read in pages of the leader amount index. The leader pins
+ * every page to the head sequence number the snapshot started at, and once the
+ * last page is applied the follower continues with the log after that head, so
+ * the changes made on the leader while the pages were read are applied too.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ReplicationFollower implements Runnable {
+	public static final String LOG_PATH = "/transactionservice/replication/log";
+	public static final long NEVER = -1;
+	public static final long SNAPSHOT_SEQUENCE = 0;
+
+	private final String leaderUrl;
+	private final long pollIntervalMillis;
+	private final int batchSize;
+
+	private volatile boolean running;
+	private volatile String leaderEpoch;
+	private volatile boolean resyncRequired;
+	private volatile String snapshotEpoch;
+	private volatile long snapshotHeadSequence;
+	private volatile String snapshotCursor;
+	private volatile long appliedSequence;
+	private volatile long leaderHeadSequence;
+	private volatile long lastCaughtUpMillis;
+	private volatile String lastError;
+
+	/**
+	 * @param leaderUrl
+	 *            a base URL of the leader web application, e.g.
+	 *            http://localhost:8080/transactionWebService
+	 * @param pollIntervalMillis
+	 *            a pause between polls once the follower has caught up
+	 * @param batchSize
+	 *            a maximum number of log entries to request at once
+	 */
+	public ReplicationFollower(String leaderUrl, long pollIntervalMillis, int batchSize) {
+		this.leaderUrl = leaderUrl.endsWith("/") ? leaderUrl.substring(0, leaderUrl.length() - 1) : leaderUrl;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.batchSize = batchSize;
+		this.running = true;
+		this.appliedSequence = 0;
+		this.leaderHeadSequence = 0;
+		this.lastCaughtUpMillis = NEVER;
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				long requestMillis = System.currentTimeMillis();
+				JSONObject batch = fetch();
+				applyBatch(batch, requestMillis);
+				lastError = null;
+				if (isCaughtUp()) {
+					Thread.sleep(pollIntervalMillis);
+				}
+			} catch (IOException | RuntimeException e) {
+				// any failure, e.g. a malformed entry, is retried and reported
+				// instead of ending the thread
+				lastError = e.toString();
+				try {
+					Thread.sleep(pollIntervalMillis);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Makes the task return after the current poll.
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * Applies a batch of log entries as written by
+	 * JSONExporter.exportChangeLogToJSON() or a snapshot page as written by
+	 * JSONExporter.exportSnapshotToJSON(). A batch which is not a snapshot and
+	 * comes from another epoch than the applied ones is not applied, a
+	 * snapshot is requested with the next poll instead.
+	 * 
+	 * @param batch
+	 *            a JSON object with the head, the snapshot flag and the entries
+	 * @param requestMillis
+	 *            a time the batch was requested at
+	 */
+	public void applyBatch(JSONObject batch, long requestMillis) {
+		String epoch = batch.getString(JSONExporter.EPOCH_PROPERTY);
+		long headSequence = batch.getLong(JSONExporter.HEAD_PROPERTY);
+		JSONArray entries = batch.getJSONArray(JSONExporter.ENTRIES_PROPERTY);
+		if (batch.optBoolean(JSONExporter.SNAPSHOT_PROPERTY)) {
+			String nextCursor = batch.optString(JSONExporter.NEXT_CURSOR_PROPERTY, null);
+			applySnapshotPage(epoch, headSequence, entries, nextCursor, requestMillis);
+			return;
+		}
+		if (leaderEpoch != null && !leaderEpoch.equals(epoch)) {
+			resyncRequired = true;
+			snapshotCursor = null;
+			leaderHeadSequence = headSequence;
+			lastCaughtUpMillis = NEVER;
+			return;
+		}
+
+		TransactionService service = TransactionService.getInstance();
+		long sequence = appliedSequence;
+		for (int i = 0; i < entries.length(); i++) {
+			JSONObject entry = entries.getJSONObject(i);
+			applyEntry(service, entry);
+			sequence = entry.getLong(JSONExporter.SEQUENCE_PROPERTY);
+		}
+
+		leaderEpoch = epoch;
+		appliedSequence = sequence;
+		leaderHeadSequence = Math.max(headSequence, sequence);
+		if (sequence >= headSequence) {
+			lastCaughtUpMillis = requestMillis;
+		}
+	}
+
+	/**
+	 * Applies a page of a snapshot, which holds the leader transactions of an
+	 * amount range starting right after the previous page. Local transactions
+	 * in the same range which are not on the page are stale and removed, so
+	 * the follower never has to remember the ids of the whole snapshot. A
+	 * page of another snapshot than the one in progress, e.g. from a
+	 * restarted leader, is dropped and the snapshot starts over.
+	 */
+	private void applySnapshotPage(String epoch, long headSequence, JSONArray entries, String nextCursor,
+			long requestMillis) {
+		AmountIndexKey after = null;
+		if (snapshotCursor != null) {
+			if (!epoch.equals(snapshotEpoch) || headSequence != snapshotHeadSequence) {
+				snapshotCursor = null;
+				resyncRequired = true;
+				return;
+			}
+			after = AmountIndexKey.fromCursor(snapshotCursor);
+		}
+
+		TransactionService service = TransactionService.getInstance();
+		Set<Long> pageIds = new HashSet<>();
+		for (int i = 0; i < entries.length(); i++) {
+			JSONObject entry = entries.getJSONObject(i);
+			applyEntry(service, entry);
+			pageIds.add(entry.getLong(JSONExporter.TRANSACTION_ID_PROPERTY));
+		}
+
+		NavigableMap<AmountIndexKey, TransactionItem> pageRange = service
+				.getTransactionsInAmountRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null, after);
+		if (nextCursor != null) {
+			pageRange = pageRange.headMap(AmountIndexKey.fromCursor(nextCursor), true);
+		}
+		List<Long> staleIds = new ArrayList<>();
+		pageRange.keySet().stream().map(AmountIndexKey::getTransactionId).filter(id -> !pageIds.contains(id))
+				.forEach(staleIds::add);
+		staleIds.forEach(service::removeTransaction);
+
+		leaderHeadSequence = headSequence;
+		lastCaughtUpMillis = NEVER;
+		if (nextCursor != null) {
+			snapshotEpoch = epoch;
+			snapshotHeadSequence = headSequence;
+			snapshotCursor = nextCursor;
+			return;
+		}
+
+		snapshotCursor = null;
+		leaderEpoch = epoch;
+		resyncRequired = false;
+		appliedSequence = headSequence;
+		lastCaughtUpMillis = requestMillis;
+	}
+
+	private void applyEntry(TransactionService service, JSONObject entry) {
+		long transactionId = entry.getLong(JSONExporter.TRANSACTION_ID_PROPERTY);
+		if (entry.optBoolean(JSONExporter.REMOVED_PROPERTY)) {
+			service.removeTransaction(transactionId);
+		} else {
+			TransactionItem transaction = JSONExporter.getInstance().exportFromJSONObject(entry);
+			transaction.setTransactionId(transactionId);
+			service.addTransaction(transaction);
+		}
+	}
+
+	private JSONObject fetch() throws IOException {
+		String query;
+		String cursor = snapshotCursor;
+		if (cursor != null) {
+			query = "?from=" + SNAPSHOT_SEQUENCE + "&head=" + snapshotHeadSequence + "&cursor="
+					+ URLEncoder.encode(cursor, StandardCharsets.UTF_8.name());
+		} else {
+			query = "?from=" + (resyncRequired ? SNAPSHOT_SEQUENCE : appliedSequence + 1);
+		}
+		URL url = new URL(leaderUrl + LOG_PATH + query + "&limit=" + batchSize);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestProperty("Accept", "application/json");
+		connection.setConnectTimeout((int) Math.max(1000, pollIntervalMillis));
+		connection.setReadTimeout(30000);
+		try {
+			int responseCode = connection.getResponseCode();
+			if (responseCode != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Leader responded with HTTP " + responseCode + " to " + url);
+			}
+			// the batch is parsed as it is read, without a copy of the body
+			try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+				return new JSONObject(new JSONTokener(reader));
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	public boolean isCaughtUp() {
+		return appliedSequence >= leaderHeadSequence && lastCaughtUpMillis != NEVER;
+	}
+
+	/**
+	 * @return milliseconds elapsed since the follower was last known to be
+	 *         caught up with the leader, or Long.MAX_VALUE if it never was
+	 */
+	public long getLagMillis() {
+		long caughtUpMillis = lastCaughtUpMillis;
+		if (caughtUpMillis == NEVER) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, System.currentTimeMillis() - caughtUpMillis);
+	}
+
+	/**
+	 * @return a number of leader log entries known to be not applied yet
+	 */
+	public long getLagEntries() {
+		return Math.max(0, leaderHeadSequence - appliedSequence);
+	}
+
+	public String getLeaderUrl() {
+		return leaderUrl;
+	}
+
+	public long getPollIntervalMillis() {
+		return pollIntervalMillis;
+	}
+
+	/**
+	 * @return the epoch of the leader log the applied entries come from, or
+	 *         null if nothing has been applied yet
+	 */
+	public String getLeaderEpoch() {
+		return leaderEpoch;
+	}
+
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	public long getLeaderHeadSequence() {
+		return leaderHeadSequence;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+}
@@ -0,0 +1,50 @@
+package transactionservice.replication;
+
+/**
+ * An enum with the replication role of a service instance. A standalone
+ * instance neither ships nor applies a change log, a leader accepts writes and
+ * ships its change log, a follower applies the change log of a leader and
+ * serves reads only.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public enum ReplicationRole {
+	STANDALONE("standalone"), LEADER("leader"), FOLLOWER("follower");
+
+	private final String name;
+
+	private ReplicationRole(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the string representation of the role.
+	 *
+	 * @return the string representation of the role.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Finds a role by its string representation.
+	 *
+	 * @param name
+	 *            a string representation of the role, case insensitive
+	 * @return a matching role or STANDALONE if name is null
+	 * @throws IllegalArgumentException
+	 *             if there is no role with such name
+	 */
+	public static ReplicationRole fromName(String name) {
+		if (name == null) {
+			return STANDALONE;
+		}
+
+		for (ReplicationRole role : values()) {
+			if (role.name.equalsIgnoreCase(name.trim())) {
+				return role;
+			}
+		}
+		throw new IllegalArgumentException("Unknown replication role: " + name);
+	}
+}
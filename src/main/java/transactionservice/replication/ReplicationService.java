@@ -0,0 +1,169 @@
+package transactionservice.replication;
+
+import org.json.JSONObject;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.service.TransactionService;
+
+/**
+ * A service singleton which holds the replication role of this instance. A
+ * leader records every change of the TransactionService in a ChangeLog, a
+ * follower runs a ReplicationFollower in a background thread and refuses
+ * reads while its replication lag exceeds a given bound.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class ReplicationService {
+	private volatile ReplicationRole role;
+	private volatile ChangeLog changeLog;
+	private volatile ReplicationFollower follower;
+	private volatile long maxLagMillis;
+	private Thread followerThread;
+
+	private static ReplicationService instance;
+
+	private ReplicationService() {
+		this.role = ReplicationRole.STANDALONE;
+	}
+
+	public static ReplicationService getInstance() {
+		if (instance == null) {
+			synchronized (ReplicationService.class) {
+				if (instance == null) {
+					instance = new ReplicationService();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Makes this instance a leader which records the changes in a change log.
+	 * 
+	 * @param logCapacity
+	 *            a number of the last changes retained for the followers
+	 */
+	public synchronized void startLeader(int logCapacity) {
+		stop();
+		changeLog = new ChangeLog(logCapacity);
+		TransactionService.getInstance().addChangeListener(changeLog);
+		role = ReplicationRole.LEADER;
+	}
+
+	/**
+	 * Makes this instance a follower of a leader.
+	 * 
+	 * @param leaderUrl
+	 *            a base URL of the leader web application
+	 * @param pollIntervalMillis
+	 *            a pause between polls once the follower has caught up
+	 * @param batchSize
+	 *            a maximum number of log entries to request at once
+	 * @param maxLagMillis
+	 *            a replication lag above which reads are refused
+	 */
+	public synchronized void startFollower(String leaderUrl, long pollIntervalMillis, int batchSize,
+			long maxLagMillis) {
+		stop();
+		this.maxLagMillis = maxLagMillis;
+		follower = new ReplicationFollower(leaderUrl, pollIntervalMillis, batchSize);
+		followerThread = new Thread(follower, "replication-follower");
+		followerThread.setDaemon(true);
+		followerThread.start();
+		role = ReplicationRole.FOLLOWER;
+	}
+
+	/**
+	 * Stops replication and makes this instance standalone.
+	 */
+	public synchronized void stop() {
+		if (changeLog != null) {
+			TransactionService.getInstance().removeChangeListener(changeLog);
+			changeLog = null;
+		}
+		if (follower != null) {
+			follower.stop();
+			followerThread.interrupt();
+			follower = null;
+			followerThread = null;
+		}
+		role = ReplicationRole.STANDALONE;
+	}
+
+	/**
+	 * @return true if this instance must not accept writes
+	 */
+	public boolean isReadOnly() {
+		return role == ReplicationRole.FOLLOWER;
+	}
+
+	/**
+	 * @return true if this instance is a follower whose replication lag
+	 *         exceeds the bound
+	 */
+	public boolean isStale() {
+		ReplicationFollower currentFollower = follower;
+		return currentFollower != null && currentFollower.getLagMillis() > maxLagMillis;
+	}
+
+	public ReplicationRole getRole() {
+		return role;
+	}
+
+	/**
+	 * @return the change log of a leader or null if this instance is not a
+	 *         leader
+	 */
+	public ChangeLog getChangeLog() {
+		return changeLog;
+	}
+
+	/**
+	 * @return the follower task or null if this instance is not a follower
+	 */
+	public ReplicationFollower getFollower() {
+		return follower;
+	}
+
+	public long getMaxLagMillis() {
+		return maxLagMillis;
+	}
+
+	/**
+	 * Exports the replication state of this instance to JSON. A leader reports
+	 * the head and the oldest retained sequence numbers of its change log, a
+	 * follower reports the applied sequence number and the replication lag,
+	 * which is -1 if the follower has never caught up.
+	 * 
+	 * @return a JSON object with the replication state
+	 */
+	public JSONObject exportStatusToJSON() {
+		JSONObject statusAsJson = new JSONObject();
+		statusAsJson.put(JSONExporter.ROLE_PROPERTY, role.getName());
+		ChangeLog currentChangeLog = changeLog;
+		if (currentChangeLog != null) {
+			statusAsJson.put(JSONExporter.EPOCH_PROPERTY, currentChangeLog.getEpoch());
+			statusAsJson.put(JSONExporter.HEAD_PROPERTY, currentChangeLog.getHeadSequence());
+			statusAsJson.put(JSONExporter.OLDEST_PROPERTY, currentChangeLog.getOldestSequence());
+		}
+
+		ReplicationFollower currentFollower = follower;
+		if (currentFollower != null) {
+			long lagMillis = currentFollower.getLagMillis();
+			statusAsJson.put(JSONExporter.LEADER_URL_PROPERTY, currentFollower.getLeaderUrl());
+			if (currentFollower.getLeaderEpoch() != null) {
+				statusAsJson.put(JSONExporter.EPOCH_PROPERTY, currentFollower.getLeaderEpoch());
+			}
+			statusAsJson.put(JSONExporter.APPLIED_PROPERTY, currentFollower.getAppliedSequence());
+			statusAsJson.put(JSONExporter.LEADER_HEAD_PROPERTY, currentFollower.getLeaderHeadSequence());
+			statusAsJson.put(JSONExporter.LAG_MILLIS_PROPERTY, lagMillis == Long.MAX_VALUE ? -1 : lagMillis);
+			statusAsJson.put(JSONExporter.LAG_ENTRIES_PROPERTY, currentFollower.getLagEntries());
+			statusAsJson.put(JSONExporter.MAX_LAG_MILLIS_PROPERTY, maxLagMillis);
+			if (currentFollower.getLastError() != null) {
+				statusAsJson.put(JSONExporter.LAST_ERROR_PROPERTY, currentFollower.getLastError());
+			}
+		}
+		return statusAsJson;
+	}
+}
@@ -0,0 +1,185 @@
+package transactionservice.retention;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timer wheel which keeps a large number of deadlines and
+ * finds the expired ones in time proportional to their count, without
+ * scanning the pending ones.
+ * 
+ * Time is divided into ticks. Every level is a ring of wheelSize slots, a slot
+ * of level 0 spans one tick and a slot of every further level spans a whole
+ * turn of the level below. A deadline is put into the lowest level whose turn
+ * reaches it; when the time enters a slot of a higher level, its deadlines are
+ * moved down to the lower levels, and the deadlines in the current slot of
+ * level 0 expire. Deadlines beyond the turn of the highest level wait in its
+ * farthest slot and are put back on every turn until they come within reach.
+ * 
+ * A deadline never expires before its time, but up to one tick after it. The
+ * wheel is not thread safe.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class HierarchicalTimerWheel<T> {
+	private final long tickMillis;
+	private final int levels;
+	private final int slotBits;
+	private final int slotMask;
+	private final List<List<Timeout<T>>> slots;
+	private List<Timeout<T>> expired;
+	private long currentTick;
+	private int size;
+
+	/**
+	 * @param tickMillis
+	 *            a length of one tick in milliseconds
+	 * @param wheelSize
+	 *            a number of slots of every level, a power of two
+	 * @param levels
+	 *            a number of levels
+	 * @param startMillis
+	 *            the current time in milliseconds
+	 */
+	public HierarchicalTimerWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+		if (tickMillis <= 0 || wheelSize < 2 || Integer.bitCount(wheelSize) != 1 || levels < 1
+				|| Integer.numberOfTrailingZeros(wheelSize) * levels >= Long.SIZE - 1) {
+			throw new IllegalArgumentException("Unsupported timer wheel: tick " + tickMillis + " ms, "
+					+ wheelSize + " slots, " + levels + " levels");
+		}
+
+		this.tickMillis = tickMillis;
+		this.levels = levels;
+		this.slotBits = Integer.numberOfTrailingZeros(wheelSize);
+		this.slotMask = wheelSize - 1;
+		this.slots = new ArrayList<>(wheelSize * levels);
+		for (int i = 0; i < wheelSize * levels; i++) {
+			slots.add(null);
+		}
+		this.expired = new ArrayList<>();
+		this.currentTick = startMillis / tickMillis;
+	}
+
+	/**
+	 * Schedules a value to expire at a deadline.
+	 * 
+	 * @param deadlineMillis
+	 *            a time in milliseconds at which the value expires, it
+	 *            expires with the next advance if the time has passed
+	 * @param value
+	 *            a value to schedule
+	 */
+	public void schedule(long deadlineMillis, T value) {
+		// rounded up, so that a value never expires early
+		long deadlineTick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis > 0 ? 1 : 0);
+		add(new Timeout<>(deadlineTick, value));
+		size++;
+	}
+
+	/**
+	 * Advances the time and passes every expired value to a consumer.
+	 * 
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @param consumer
+	 *            a consumer of the expired values
+	 * @return a number of expired values
+	 */
+	public int advance(long nowMillis, Consumer<T> consumer) {
+		long nowTick = nowMillis / tickMillis;
+		int expiredCount = drainExpired(consumer);
+		while (currentTick < nowTick && size > 0) {
+			currentTick++;
+			for (int level = levels - 1; level > 0; level--) {
+				if ((currentTick & ((1L << (level * slotBits)) - 1)) == 0) {
+					cascade(level);
+				}
+			}
+			List<Timeout<T>> slot = takeSlot(0, (int) (currentTick & slotMask));
+			if (slot != null) {
+				expired.addAll(slot);
+			}
+			expiredCount += drainExpired(consumer);
+		}
+		// nothing is pending, so the ticks in between need not be visited
+		currentTick = Math.max(currentTick, nowTick);
+		return expiredCount;
+	}
+
+	/**
+	 * @return a number of values which have not expired yet
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void cascade(int level) {
+		List<Timeout<T>> slot = takeSlot(level, (int) ((currentTick >>> (level * slotBits)) & slotMask));
+		if (slot != null) {
+			for (Timeout<T> timeout : slot) {
+				add(timeout);
+			}
+		}
+	}
+
+	private void add(Timeout<T> timeout) {
+		long delta = timeout.deadlineTick - currentTick;
+		if (delta <= 0) {
+			expired.add(timeout);
+			return;
+		}
+
+		for (int level = 0; level < levels; level++) {
+			if (delta < 1L << ((level + 1) * slotBits)) {
+				putIntoSlot(level, (int) ((timeout.deadlineTick >>> (level * slotBits)) & slotMask), timeout);
+				return;
+			}
+		}
+		// beyond the highest level, wait in its current slot, which is reached
+		// again last
+		int topLevel = levels - 1;
+		putIntoSlot(topLevel, (int) ((currentTick >>> (topLevel * slotBits)) & slotMask), timeout);
+	}
+
+	private void putIntoSlot(int level, int index, Timeout<T> timeout) {
+		int slotIndex = (level << slotBits) + index;
+		List<Timeout<T>> slot = slots.get(slotIndex);
+		if (slot == null) {
+			slot = new ArrayList<>();
+			slots.set(slotIndex, slot);
+		}
+		slot.add(timeout);
+	}
+
+	private List<Timeout<T>> takeSlot(int level, int index) {
+		return slots.set((level << slotBits) + index, null);
+	}
+
+	private int drainExpired(Consumer<T> consumer) {
+		if (expired.isEmpty()) {
+			return 0;
+		}
+
+		List<Timeout<T>> expiredNow = expired;
+		expired = new ArrayList<>();
+		size -= expiredNow.size();
+		for (Timeout<T> timeout : expiredNow) {
+			consumer.accept(timeout.value);
+		}
+		return expiredNow.size();
+	}
+
+	/**
+	 * A scheduled value with its deadline in ticks.
+	 */
+	private static class Timeout<T> {
+		private final long deadlineTick;
+		private final T value;
+
+		Timeout(long deadlineTick, T value) {
+			this.deadlineTick = deadlineTick;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package transactionservice.retention;
+
+import static transactionservice.config.ContextParameters.getLongParameter;
+import static transactionservice.config.ContextParameters.getParameter;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import transactionservice.replication.ReplicationService;
+
+/**
+ * Starts the eviction of expired transactions when the web application starts
+ * and stops it when the application stops. The settings are read from the
+ * system properties and, if a property is not set, from the context
+ * parameters of the same name. A follower does not evict anything itself, it
+ * applies the evictions of its leader from the change log.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class RetentionContextListener implements ServletContextListener {
+	public static final String DEFAULT_RETENTION_PARAMETER = "transactionservice.retention.defaultMillis";
+	public static final String TYPE_RETENTION_PARAMETER = "transactionservice.retention.types";
+	public static final String TICK_PARAMETER = "transactionservice.retention.tickMillis";
+
+	public static final long DEFAULT_TICK_MILLIS = 1000;
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		ServletContext context = event.getServletContext();
+		if (ReplicationService.getInstance().isReadOnly()) {
+			context.log("Retention is left to the leader");
+			return;
+		}
+
+		RetentionPolicy policy = RetentionPolicy.parse(
+				getLongParameter(context, DEFAULT_RETENTION_PARAMETER, RetentionPolicy.KEEP_FOREVER),
+				getParameter(context, TYPE_RETENTION_PARAMETER));
+		RetentionService.getInstance().start(policy,
+				getLongParameter(context, TICK_PARAMETER, DEFAULT_TICK_MILLIS));
+		context.log("Retention: " + policy);
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		RetentionService.getInstance().stop();
+	}
+}
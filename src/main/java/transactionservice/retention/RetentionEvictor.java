@@ -0,0 +1,130 @@
+package transactionservice.retention;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import transactionservice.model.TransactionItem;
+import transactionservice.service.TransactionChangeListener;
+import transactionservice.service.TransactionService;
+
+/**
+ * A task which evicts the transactions of the TransactionService once their
+ * retention period has passed. It listens to the changes of the service and
+ * schedules the expiration of every stored transaction in a timer wheel, so a
+ * tick only touches the transactions which expire in it. An expiration is
+ * ignored if the transaction has been stored again since it was scheduled.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class RetentionEvictor implements Runnable, TransactionChangeListener {
+	public static final int WHEEL_SIZE = 64;
+	public static final int WHEEL_LEVELS = 4;
+
+	private final RetentionPolicy policy;
+	private final long tickMillis;
+	private final HierarchicalTimerWheel<Expiration> wheel;
+	private volatile boolean running;
+
+	/**
+	 * @param policy
+	 *            retention periods by type
+	 * @param tickMillis
+	 *            a precision of the eviction and a pause between the runs
+	 */
+	public RetentionEvictor(RetentionPolicy policy, long tickMillis) {
+		this.policy = policy;
+		this.tickMillis = tickMillis;
+		this.wheel = new HierarchicalTimerWheel<>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+		this.running = true;
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			evictExpired(System.currentTimeMillis());
+			try {
+				Thread.sleep(tickMillis);
+			} catch (InterruptedException interrupted) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public void transactionChanged(long transactionId, TransactionItem transaction) {
+		if (transaction != null) {
+			schedule(transactionId, transaction);
+		}
+	}
+
+	/**
+	 * Schedules the expiration of all transactions which are already stored,
+	 * e.g. preloaded ones, which no change was reported for.
+	 */
+	public void scheduleStoredTransactions() {
+		TransactionService.getInstance().getTransactions().forEach(this::schedule);
+	}
+
+	/**
+	 * Evicts the transactions which have expired by a given time.
+	 * 
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @return a number of evicted transactions
+	 */
+	public int evictExpired(long nowMillis) {
+		List<Expiration> expirations = new ArrayList<>();
+		synchronized (wheel) {
+			wheel.advance(nowMillis, expirations::add);
+		}
+
+		// evicted outside of the wheel lock, as the eviction notifies this
+		// listener about the reparented children
+		int evictedCount = 0;
+		for (Expiration expiration : expirations) {
+			if (TransactionService.getInstance().evictTransaction(expiration.transactionId,
+					expiration.version) != null) {
+				evictedCount++;
+			}
+		}
+		return evictedCount;
+	}
+
+	/**
+	 * @return a number of scheduled expirations, including the ones of the
+	 *         transactions which have been stored again since
+	 */
+	public int getScheduledCount() {
+		synchronized (wheel) {
+			return wheel.size();
+		}
+	}
+
+	private void schedule(long transactionId, TransactionItem transaction) {
+		long retentionMillis = policy.getRetentionMillis(transaction.getType());
+		if (retentionMillis > RetentionPolicy.KEEP_FOREVER) {
+			synchronized (wheel) {
+				wheel.schedule(transaction.getIngestTime() + retentionMillis,
+						new Expiration(transactionId, transaction.getVersion()));
+			}
+		}
+	}
+
+	/**
+	 * A scheduled expiration of one version of a transaction.
+	 */
+	private static class Expiration {
+		private final long transactionId;
+		private final long version;
+
+		Expiration(long transactionId, long version) {
+			this.transactionId = transactionId;
+			this.version = version;
+		}
+	}
+}
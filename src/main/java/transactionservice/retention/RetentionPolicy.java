@@ -0,0 +1,83 @@
+package transactionservice.retention;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retention periods of the transactions by type. A type without a period of
+ * its own, including transactions without a type, gets the default period. A
+ * period which is not positive means that the transactions are kept forever.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class RetentionPolicy {
+	public static final long KEEP_FOREVER = 0;
+
+	private final long defaultRetentionMillis;
+	private final Map<String, Long> retentionMillisByType;
+
+	public RetentionPolicy(long defaultRetentionMillis, Map<String, Long> retentionMillisByType) {
+		this.defaultRetentionMillis = defaultRetentionMillis;
+		this.retentionMillisByType = Collections.unmodifiableMap(new HashMap<>(retentionMillisByType));
+	}
+
+	/**
+	 * Parses the retention periods by type.
+	 * 
+	 * @param defaultRetentionMillis
+	 *            a retention period of the types which are not listed
+	 * @param retentionMillisByType
+	 *            a comma separated list of type=millis pairs or null
+	 * @return a configured policy
+	 * @throws IllegalArgumentException
+	 *             if the list is malformed
+	 */
+	public static RetentionPolicy parse(long defaultRetentionMillis, String retentionMillisByType) {
+		Map<String, Long> periods = new HashMap<>();
+		if (retentionMillisByType != null) {
+			for (String pair : retentionMillisByType.split(",")) {
+				if (pair.trim().isEmpty()) {
+					continue;
+				}
+				int separatorIndex = pair.indexOf('=');
+				if (separatorIndex <= 0) {
+					throw new IllegalArgumentException("Malformed retention period: " + pair);
+				}
+				try {
+					periods.put(pair.substring(0, separatorIndex).trim(),
+							Long.parseLong(pair.substring(separatorIndex + 1).trim()));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Malformed retention period: " + pair, e);
+				}
+			}
+		}
+		return new RetentionPolicy(defaultRetentionMillis, periods);
+	}
+
+	/**
+	 * @param type
+	 *            a type of transaction or null
+	 * @return a retention period of the type in milliseconds, not positive if
+	 *         the transactions of the type are kept forever
+	 */
+	public long getRetentionMillis(String type) {
+		Long retentionMillis = type == null ? null : retentionMillisByType.get(type);
+		return retentionMillis == null ? defaultRetentionMillis : retentionMillis;
+	}
+
+	/**
+	 * @return true if the transactions of at least one type expire
+	 */
+	public boolean isAnyRetention() {
+		if (defaultRetentionMillis > KEEP_FOREVER) {
+			return true;
+		}
+		return retentionMillisByType.values().stream().anyMatch(retentionMillis -> retentionMillis > KEEP_FOREVER);
+	}
+
+	@Override
+	public String toString() {
+		return "default " + defaultRetentionMillis + " ms, by type " + retentionMillisByType;
+	}
+}
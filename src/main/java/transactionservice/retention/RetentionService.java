@@ -0,0 +1,75 @@
+package transactionservice.retention;
+
+import transactionservice.service.TransactionService;
+
+/**
+ * A service singleton which runs a RetentionEvictor in a background thread
+ * while retention is enabled.
+ * 
+ * @author Ekaterina Lobanova
+ */
+public class RetentionService {
+	private volatile RetentionEvictor evictor;
+	private Thread evictorThread;
+
+	private static RetentionService instance;
+
+	private RetentionService() {
+	}
+
+	public static RetentionService getInstance() {
+		if (instance == null) {
+			synchronized (RetentionService.class) {
+				if (instance == null) {
+					instance = new RetentionService();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Starts evicting the transactions of the TransactionService, including
+	 * the ones which are already stored, once their retention period has
+	 * passed. Nothing is started if no type has a retention period.
+	 * 
+	 * @param policy
+	 *            retention periods by type
+	 * @param tickMillis
+	 *            a precision of the eviction
+	 */
+	public synchronized void start(RetentionPolicy policy, long tickMillis) {
+		stop();
+		if (!policy.isAnyRetention()) {
+			return;
+		}
+
+		evictor = new RetentionEvictor(policy, tickMillis);
+		TransactionService.getInstance().addChangeListener(evictor);
+		evictor.scheduleStoredTransactions();
+		evictorThread = new Thread(evictor, "retention-evictor");
+		evictorThread.setDaemon(true);
+		evictorThread.start();
+	}
+
+	/**
+	 * Stops the eviction.
+	 */
+	public synchronized void stop() {
+		if (evictor != null) {
+			TransactionService.getInstance().removeChangeListener(evictor);
+			evictor.stop();
+			evictorThread.interrupt();
+			evictor = null;
+			evictorThread = null;
+		}
+	}
+
+	/**
+	 * @return the evictor or null if retention is not enabled
+	 */
+	public RetentionEvictor getEvictor() {
+		return evictor;
+	}
+}
@@ -0,0 +1,87 @@
+package transactionservice.service;
+
+/**
+ * A key of the amount index. Keys are ordered by amount and then by
+ * transaction id, so that transactions with equal amounts get distinct keys.
+ * A key can be turned into an opaque cursor string to continue a range query
+ * right after it.
+ *
+ * @author Ekaterina Lobanova
+ */
+public final class AmountIndexKey implements Comparable<AmountIndexKey> {
+	private static final char CURSOR_SEPARATOR = '_';
+
+	private final double amount;
+	private final long transactionId;
+
+	public AmountIndexKey(double amount, long transactionId) {
+		this.amount = amount;
+		this.transactionId = transactionId;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+
+	public long getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * Builds a cursor string which points at this key.
+	 *
+	 * @return a cursor string that can be parsed back with fromCursor()
+	 */
+	public String toCursor() {
+		return Long.toHexString(Double.doubleToLongBits(amount)) + CURSOR_SEPARATOR + transactionId;
+	}
+
+	/**
+	 * Parses a cursor string produced by toCursor().
+	 *
+	 * @param cursor
+	 *            a cursor string
+	 * @return a key the cursor points at
+	 * @throws IllegalArgumentException
+	 *             if the cursor is malformed
+	 */
+	public static AmountIndexKey fromCursor(String cursor) {
+		int separatorIndex = cursor == null ? -1 : cursor.indexOf(CURSOR_SEPARATOR);
+		if (separatorIndex < 0) {
+			throw new IllegalArgumentException("Malformed cursor: " + cursor);
+		}
+
+		try {
+			long amountBits = Long.parseUnsignedLong(cursor.substring(0, separatorIndex), 16);
+			long transactionId = Long.parseLong(cursor.substring(separatorIndex + 1));
+			return new AmountIndexKey(Double.longBitsToDouble(amountBits), transactionId);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+		}
+	}
+
+	@Override
+	public int compareTo(AmountIndexKey other) {
+		int amountComparison = Double.compare(amount, other.amount);
+		if (amountComparison != 0) {
+			return amountComparison;
+		}
+		return Long.compare(transactionId, other.transactionId);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof AmountIndexKey)) {
+			return false;
+		}
+		return compareTo((AmountIndexKey) other) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Double.hashCode(amount) + Long.hashCode(transactionId);
+	}
+}
@@ -0,0 +1,37 @@
+package transactionservice.service;
+
+import transactionservice.model.TransactionItem;
+
+/**
+ * A visitor of the transactions which are transitively linked by their parent
+ * id to a root transaction. Every transaction is entered before its children
+ * and exited after them, when the sum of its subtree is known.
+ *
+ * @author Ekaterina Lobanova
+ */
+public interface SubtreeVisitor {
+
+	/**
+	 * Called before the children of a transaction are visited.
+	 *
+	 * @param transactionId
+	 *            an id of the transaction
+	 * @param transaction
+	 *            the transaction, or null for a root which is not in the map
+	 */
+	default void enter(long transactionId, TransactionItem transaction) {
+	}
+
+	/**
+	 * Called after the children of a transaction have been visited.
+	 *
+	 * @param transactionId
+	 *            an id of the transaction
+	 * @param transaction
+	 *            the transaction, or null for a root which is not in the map
+	 * @param sum
+	 *            the sum of amount of all transactions that are transitively
+	 *            linked by a parent id to the transaction
+	 */
+	void exit(long transactionId, TransactionItem transaction, double sum);
+}
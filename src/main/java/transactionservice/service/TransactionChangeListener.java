@@ -0,0 +1,24 @@
+package transactionservice.service;
+
+import transactionservice.model.TransactionItem;
+
+/**
+ * A listener which is notified about every change of the transactions map of
+ * the TransactionService. Notifications about one transaction id are delivered
+ * while the service holds the lock of that id, so they arrive in the order the
+ * changes were applied and a listener must not call back into the service.
+ *
+ * @author Ekaterina Lobanova
+ */
+public interface TransactionChangeListener {
+
+	/**
+	 * Called when a transaction was added, replaced or removed.
+	 *
+	 * @param transactionId
+	 *            an id of the changed transaction
+	 * @param transaction
+	 *            a new value of the transaction or null if it was removed
+	 */
+	void transactionChanged(long transactionId, TransactionItem transaction);
+}
@@ -1,13 +1,35 @@
 package transactionservice.service;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.monitoring.BatchLookupEvent;
+import transactionservice.monitoring.SumQueryEvent;
+import transactionservice.monitoring.TypeQueryEvent;
 
 /**
  * A service singleton provides operations on the transactions such as finding a
@@ -15,16 +37,41 @@ import transactionservice.model.TransactionItem;
  * a given transaction id, collecting a list of all transaction identifiers that
  * share the same given type, adding a transaction into a map.
  * 
+ * Besides the map of transactions by id the service maintains a sorted index
+ * on amount, globally and per type, and an index of children ids by parent id.
+ * Both are updated atomically together with the map on every insert, replace
+ * and removal.
+ * 
+ * Registered TransactionChangeListeners are notified about every change. While
+ * there are listeners, writes take a shared lock so that a consistent point of
+ * the change stream can be taken with callWithWritesPaused().
+ * 
+ * Every stored transaction is stamped with its ingest time unless it already
+ * carries one, and with a version, so that expired transactions can be
+ * evicted with evictTransaction().
+ * 
  * @author Ekaterina Lobanova
  */
 public class TransactionService {
 	public static final long ABSENT_ID = 0;
 	private ConcurrentMap<Long, TransactionItem> transactions;
+	private ConcurrentNavigableMap<AmountIndexKey, TransactionItem> amountIndex;
+	private ConcurrentMap<String, ConcurrentNavigableMap<AmountIndexKey, TransactionItem>> amountIndexByType;
+	private ConcurrentMap<Long, Set<Long>> childrenIndex;
+	private CopyOnWriteArrayList<TransactionChangeListener> changeListeners;
+	private ReadWriteLock changeLock;
+	private AtomicLong versions;
 
 	private static TransactionService instance;
 
 	private TransactionService() {
 		this.transactions = new ConcurrentHashMap<>();
+		this.amountIndex = new ConcurrentSkipListMap<>();
+		this.amountIndexByType = new ConcurrentHashMap<>();
+		this.childrenIndex = new ConcurrentHashMap<>();
+		this.changeListeners = new CopyOnWriteArrayList<>();
+		this.changeLock = new ReentrantReadWriteLock();
+		this.versions = new AtomicLong();
 	}
 
 	public static TransactionService getInstance() {
@@ -50,7 +97,7 @@ public class TransactionService {
 	 */
 	public TransactionItem addTransaction(TransactionItem transaction) {
 		if (transaction != null && transaction.getTransactionId() != ABSENT_ID) {
-			return transactions.put(transaction.getTransactionId(), transaction);
+			return store(transaction.getTransactionId(), transaction, true, true);
 		}
 
 		return null;
@@ -66,14 +113,105 @@ public class TransactionService {
 	 *         linked by a parent id to a given transactionId
 	 */
 	public double getSumOfTransactionsLinkedTo(long transactionId) {
-		double sumOfLinkedTransactions = 0;
-		Collection<TransactionItem> transactionItems = transactions.values();
-		if (transactionItems != null && !transactionItems.isEmpty()) {
-			return transactionItems.stream().filter(transactionItem -> isAncestorOf(transactionId, transactionItem))
-					.map(transactionItem -> transactionItem.getAmount()).reduce((one, another) -> one + another)
-					.orElse(0d);
+		SumQueryEvent event = new SumQueryEvent();
+		event.begin();
+		double[] sumOfLinkedTransactions = new double[1];
+		long visitedCount = visitSubtree(transactionId, (id, transaction, sum) -> sumOfLinkedTransactions[0] = sum);
+		if (event.shouldCommit()) {
+			event.setRootId(transactionId);
+			event.setVisitedNodes(visitedCount);
+			event.commit();
 		}
-		return sumOfLinkedTransactions;
+		return sumOfLinkedTransactions[0];
+	}
+
+	/**
+	 * Visits all transactions that are transitively linked by a parent id to a
+	 * given transactionId in one depth-first pass over the children index,
+	 * computing the sum of every subtree bottom-up on the way. The memory used
+	 * is proportional to the depth of the subtree, not to its size.
+	 * 
+	 * @param transactionId
+	 *            an id of the root transaction, which is visited as well
+	 * @param visitor
+	 *            a visitor to notify about every transaction
+	 * @return the number of visited transactions without the root
+	 */
+	public long visitSubtree(long transactionId, SubtreeVisitor visitor) {
+		Deque<SubtreeFrame> stack = new ArrayDeque<>();
+		TransactionItem root = transactions.get(transactionId);
+		visitor.enter(transactionId, root);
+		stack.push(new SubtreeFrame(transactionId, root, getChildrenIds(transactionId).iterator()));
+
+		long visitedCount = 0;
+		while (!stack.isEmpty()) {
+			SubtreeFrame frame = stack.peek();
+			if (frame.children.hasNext()) {
+				long childId = frame.children.next();
+				TransactionItem child = transactions.get(childId);
+				// a parent link back to the root is the only way to a cycle
+				if (childId != transactionId && child != null) {
+					visitor.enter(childId, child);
+					stack.push(new SubtreeFrame(childId, child, getChildrenIds(childId).iterator()));
+				}
+			} else {
+				stack.pop();
+				visitor.exit(frame.transactionId, frame.transaction, frame.sum);
+				SubtreeFrame parent = stack.peek();
+				if (parent != null) {
+					parent.sum += frame.transaction.getAmount() + frame.sum;
+					visitedCount++;
+				}
+			}
+		}
+		return visitedCount;
+	}
+
+	private Set<Long> getChildrenIds(long transactionId) {
+		Set<Long> childrenIds = childrenIndex.get(transactionId);
+		return childrenIds == null ? Collections.emptySet() : childrenIds;
+	}
+
+	/**
+	 * A state of a transaction on the path of a subtree traversal.
+	 */
+	private static class SubtreeFrame {
+		private final long transactionId;
+		private final TransactionItem transaction;
+		private final Iterator<Long> children;
+		private double sum;
+
+		SubtreeFrame(long transactionId, TransactionItem transaction, Iterator<Long> children) {
+			this.transactionId = transactionId;
+			this.transaction = transaction;
+			this.children = children;
+		}
+	}
+
+	/**
+	 * Looks up several transactions by id in one pass.
+	 * 
+	 * @param transactionIds
+	 *            ids of transactions to look up
+	 * @return a map from id to transaction with only the ids which were found,
+	 *         in the iteration order of transactionIds
+	 */
+	public Map<Long, TransactionItem> getTransactionsByIds(Collection<Long> transactionIds) {
+		BatchLookupEvent event = new BatchLookupEvent();
+		event.begin();
+		Map<Long, TransactionItem> foundTransactions = new LinkedHashMap<>();
+		for (Long transactionId : transactionIds) {
+			TransactionItem transaction = transactions.get(transactionId);
+			if (transaction != null) {
+				foundTransactions.put(transactionId, transaction);
+			}
+		}
+		if (event.shouldCommit()) {
+			event.setRequestedIds(transactionIds.size());
+			event.setFoundTransactions(foundTransactions.size());
+			event.commit();
+		}
+		return foundTransactions;
 	}
 
 	/**
@@ -86,13 +224,20 @@ public class TransactionService {
 	 *         transaction type
 	 */
 	public Set<Long> getTransactionIdsOfType(String transactionType) {
+		TypeQueryEvent event = new TypeQueryEvent();
+		event.begin();
 		Set<Long> transactionIds = new HashSet<>();
 		Collection<TransactionItem> transactionItems = transactions.values();
 		if (transactionItems != null && !transactionItems.isEmpty()) {
-			return transactionItems.stream()
+			transactionIds = transactionItems.stream()
 					.filter(transactionItem -> isTransactionTypeEqual(transactionItem, transactionType))
 					.map(transactionItem -> transactionItem.getTransactionId()).collect(Collectors.toSet());
 		}
+		if (event.shouldCommit()) {
+			event.setType(transactionType);
+			event.setResultSize(transactionIds.size());
+			event.commit();
+		}
 		return transactionIds;
 	}
 
@@ -147,7 +292,7 @@ public class TransactionService {
 	 */
 	public TransactionItem putIfAbsent(long transactionId, TransactionItem transactionToPut) {
 		if (transactionToPut != null && transactionId != ABSENT_ID) {
-			return transactions.putIfAbsent(transactionId, transactionToPut);
+			return store(transactionId, transactionToPut, true, false);
 		}
 		return null;
 	}
@@ -166,8 +311,320 @@ public class TransactionService {
 	 */
 	public TransactionItem replace(long transactionId, TransactionItem transactionWithUpdate) {
 		if (transactionWithUpdate != null && transactionId != ABSENT_ID) {
-			return transactions.replace(transactionId, transactionWithUpdate);
+			return store(transactionId, transactionWithUpdate, false, true);
 		}
 		return null;
 	}
+
+	/**
+	 * Removes a transaction from the map and the indexes.
+	 * 
+	 * @param transactionId
+	 *            an id of transaction being removed
+	 * @return a removed transaction, or null if there was no mapping for id
+	 */
+	public TransactionItem removeTransaction(long transactionId) {
+		TransactionItem[] previous = new TransactionItem[1];
+		withChangeLock(() -> transactions.computeIfPresent(transactionId, (id, current) -> {
+			previous[0] = current;
+			removeFromIndexes(id, current);
+			notifyChangeListeners(id, null);
+			return null;
+		}));
+		return previous[0];
+	}
+
+	/**
+	 * Evicts an expired transaction from the map and the indexes, unless it
+	 * has been stored again since the expiration was scheduled. The children
+	 * of the evicted transaction are linked to its parent instead, so that the
+	 * sums of its ancestors still include them; the parent id of a child as
+	 * returned to the clients changes accordingly.
+	 * 
+	 * The children are relinked before the transaction is removed, so every
+	 * state in between, as seen by the readers and as shipped in the change
+	 * stream, is a tree where every remaining transaction is still linked to
+	 * the ancestors of the evicted one. Writes are paused meanwhile, so the
+	 * transaction cannot be stored again halfway. Writes only take the lock
+	 * while change listeners are registered, which the RetentionEvictor is.
+	 * 
+	 * @param transactionId
+	 *            an id of transaction being evicted
+	 * @param version
+	 *            the version of the expired transaction
+	 * @return an evicted transaction, or null if there was no mapping for id
+	 *         or the transaction was stored again
+	 */
+	public TransactionItem evictTransaction(long transactionId, long version) {
+		return callWithWritesPaused(() -> {
+			TransactionItem expired = transactions.get(transactionId);
+			if (expired == null || expired.getVersion() != version) {
+				return null;
+			}
+
+			long parentId = expired.getParentId();
+			for (Long childId : getChildrenIds(transactionId).toArray(new Long[0])) {
+				// a child which is also the parent would become its own parent
+				reparent(childId, transactionId, childId == parentId ? ABSENT_ID : parentId);
+			}
+			return removeTransaction(transactionId);
+		});
+	}
+
+	/**
+	 * Links a child to a new parent by storing a copy of it, as the stored
+	 * instance is shared with the indexes and with the readers. The ingest
+	 * time and the version are kept, so the child expires as it would have.
+	 */
+	private void reparent(long childId, long oldParentId, long newParentId) {
+		withChangeLock(() -> transactions.computeIfPresent(childId, (id, current) -> {
+			if (current.getParentId() != oldParentId) {
+				return current;
+			}
+
+			TransactionItem reparented = new TransactionItemBuilder().setTransactionId(id)
+					.setAmount(current.getAmount()).setType(current.getType()).setParentId(newParentId)
+					.setIngestTime(current.getIngestTime()).build();
+			reparented.setVersion(current.getVersion());
+			removeFromIndexes(id, current);
+			addToIndexes(id, reparented);
+			notifyChangeListeners(id, reparented);
+			return reparented;
+		}));
+	}
+
+	/**
+	 * Puts a transaction into the map without updating the indexes and
+	 * without notifying the listeners. It is meant for loading a large number
+	 * of transactions at start up, before the service serves requests, and has
+	 * to be followed by rebuildIndexes().
+	 * 
+	 * @param transaction
+	 *            a transaction to put
+	 * @param replacesCurrent
+	 *            tells whether the transaction replaces the transaction
+	 *            currently stored under its id; it is called atomically with
+	 *            the put
+	 */
+	public void putWithoutIndexing(TransactionItem transaction, Predicate<TransactionItem> replacesCurrent) {
+		if (transaction != null && transaction.getTransactionId() != ABSENT_ID) {
+			stampIngestTimeAndVersion(transaction);
+			transactions.compute(transaction.getTransactionId(),
+					(id, current) -> current == null || replacesCurrent.test(current) ? transaction : current);
+		}
+	}
+
+	/**
+	 * Rebuilds all indexes from the map in parallel. Like putWithoutIndexing()
+	 * it must not run concurrently with other writes.
+	 */
+	public void rebuildIndexes() {
+		amountIndex.clear();
+		amountIndexByType.clear();
+		childrenIndex.clear();
+
+		@SuppressWarnings("unchecked")
+		Entry<AmountIndexKey, TransactionItem>[] sortedEntries = transactions.entrySet().parallelStream()
+				.map(entry -> new SimpleImmutableEntry<>(
+						new AmountIndexKey(entry.getValue().getAmount(), entry.getKey()), entry.getValue()))
+				.toArray(Entry[]::new);
+		Arrays.parallelSort(sortedEntries, Entry.comparingByKey());
+		// appending keys in ascending order is much cheaper than random inserts
+		for (Entry<AmountIndexKey, TransactionItem> entry : sortedEntries) {
+			amountIndex.put(entry.getKey(), entry.getValue());
+			String type = entry.getValue().getType();
+			if (type != null) {
+				amountIndexByType.computeIfAbsent(type, key -> new ConcurrentSkipListMap<>()).put(entry.getKey(),
+						entry.getValue());
+			}
+		}
+
+		childrenIndex.putAll(transactions.entrySet().parallelStream()
+				.filter(entry -> entry.getValue().getParentId() != ABSENT_ID)
+				.collect(Collectors.groupingByConcurrent(entry -> entry.getValue().getParentId(),
+						Collectors.mapping(Entry::getKey, Collectors.toCollection(ConcurrentHashMap::newKeySet)))));
+	}
+
+	/**
+	 * Registers a listener to be notified about every subsequent change. It is
+	 * meant to be called at start up before the service accepts writes.
+	 * 
+	 * @param listener
+	 *            a listener to register
+	 */
+	public void addChangeListener(TransactionChangeListener listener) {
+		changeListeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Unregisters a listener.
+	 * 
+	 * @param listener
+	 *            a listener to unregister
+	 */
+	public void removeChangeListener(TransactionChangeListener listener) {
+		changeListeners.remove(listener);
+	}
+
+	/**
+	 * Calls an action while no write is in progress, so that every change the
+	 * listeners were notified about before the call is visible in the map.
+	 * 
+	 * @param action
+	 *            an action to call, typically capturing a position of a change
+	 *            listener
+	 * @return a result of the action
+	 */
+	public <T> T callWithWritesPaused(Supplier<T> action) {
+		changeLock.writeLock().lock();
+		try {
+			return action.get();
+		} finally {
+			changeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the transactions with amount in a given closed range in
+	 * ascending order of amount and then of id. The result is a view of the
+	 * amount index, so iterating over its first entries does not touch the
+	 * rest of the store.
+	 * 
+	 * @param fromAmount
+	 *            the lowest amount of the range
+	 * @param toAmount
+	 *            the highest amount of the range
+	 * @param transactionType
+	 *            a type the transactions have to share or null for any type
+	 * @param after
+	 *            a key after which the range continues or null to start from
+	 *            the lowest amount
+	 * @return an ordered read-only view of the matching transactions keyed by
+	 *         their amount index key, or an empty map if nothing matches
+	 */
+	public NavigableMap<AmountIndexKey, TransactionItem> getTransactionsInAmountRange(double fromAmount,
+			double toAmount, String transactionType, AmountIndexKey after) {
+		ConcurrentNavigableMap<AmountIndexKey, TransactionItem> index = transactionType == null ? amountIndex
+				: amountIndexByType.get(transactionType);
+		AmountIndexKey fromKey = new AmountIndexKey(fromAmount, Long.MIN_VALUE);
+		AmountIndexKey toKey = new AmountIndexKey(toAmount, Long.MAX_VALUE);
+		if (index == null || fromKey.compareTo(toKey) > 0) {
+			return Collections.emptyNavigableMap();
+		}
+
+		ConcurrentNavigableMap<AmountIndexKey, TransactionItem> range = index.subMap(fromKey, true, toKey, true);
+		if (after != null) {
+			range = range.tailMap(after, false);
+		}
+		return Collections.unmodifiableNavigableMap(range);
+	}
+
+	/**
+	 * Puts a transaction into the map and updates the indexes atomically with
+	 * respect to other updates of the same id.
+	 * 
+	 * @param transactionId
+	 *            an id of transaction being stored
+	 * @param transaction
+	 *            a transaction to store
+	 * @param insert
+	 *            whether the transaction is stored if there is no mapping for
+	 *            id
+	 * @param overwrite
+	 *            whether the transaction is stored if there is a mapping for
+	 *            id
+	 * @return a previous value associated with transaction id, or null if there
+	 *         was no mapping for id
+	 */
+	private TransactionItem store(long transactionId, TransactionItem transaction, boolean insert,
+			boolean overwrite) {
+		stampIngestTimeAndVersion(transaction);
+		TransactionItem[] previous = new TransactionItem[1];
+		withChangeLock(() -> transactions.compute(transactionId, (id, current) -> {
+			previous[0] = current;
+			// storing the mapped instance again changes nothing and must not
+			// be reported as a change
+			if ((current == null ? !insert : !overwrite) || current == transaction) {
+				return current;
+			}
+
+			removeFromIndexes(id, current);
+			addToIndexes(id, transaction);
+			notifyChangeListeners(id, transaction);
+			return transaction;
+		}));
+		return previous[0];
+	}
+
+	/**
+	 * Stamps a transaction which has not been stored yet. The ingest time only
+	 * has a millisecond resolution, so every stored instance also gets a
+	 * version from a counter to tell apart two stores within a millisecond.
+	 */
+	private void stampIngestTimeAndVersion(TransactionItem transaction) {
+		if (transaction.getIngestTime() == 0) {
+			transaction.setIngestTime(System.currentTimeMillis());
+		}
+		if (transaction.getVersion() == 0) {
+			transaction.setVersion(versions.incrementAndGet());
+		}
+	}
+
+	private void withChangeLock(Runnable write) {
+		if (changeListeners.isEmpty()) {
+			write.run();
+			return;
+		}
+
+		changeLock.readLock().lock();
+		try {
+			write.run();
+		} finally {
+			changeLock.readLock().unlock();
+		}
+	}
+
+	private void notifyChangeListeners(long transactionId, TransactionItem transaction) {
+		for (TransactionChangeListener listener : changeListeners) {
+			listener.transactionChanged(transactionId, transaction);
+		}
+	}
+
+	private void addToIndexes(long transactionId, TransactionItem transaction) {
+		AmountIndexKey key = new AmountIndexKey(transaction.getAmount(), transactionId);
+		amountIndex.put(key, transaction);
+		if (transaction.getType() != null) {
+			amountIndexByType.computeIfAbsent(transaction.getType(), type -> new ConcurrentSkipListMap<>()).put(key,
+					transaction);
+		}
+		if (transaction.getParentId() != ABSENT_ID) {
+			childrenIndex.compute(transaction.getParentId(), (parentId, childrenIds) -> {
+				Set<Long> updatedChildrenIds = childrenIds == null ? ConcurrentHashMap.newKeySet() : childrenIds;
+				updatedChildrenIds.add(transactionId);
+				return updatedChildrenIds;
+			});
+		}
+	}
+
+	private void removeFromIndexes(long transactionId, TransactionItem transaction) {
+		if (transaction == null) {
+			return;
+		}
+
+		AmountIndexKey key = new AmountIndexKey(transaction.getAmount(), transactionId);
+		amountIndex.remove(key, transaction);
+		if (transaction.getType() != null) {
+			ConcurrentNavigableMap<AmountIndexKey, TransactionItem> typeIndex = amountIndexByType
+					.get(transaction.getType());
+			if (typeIndex != null) {
+				typeIndex.remove(key, transaction);
+			}
+		}
+		if (transaction.getParentId() != ABSENT_ID) {
+			childrenIndex.computeIfPresent(transaction.getParentId(), (parentId, childrenIds) -> {
+				childrenIds.remove(transactionId);
+				return childrenIds.isEmpty() ? null : childrenIds;
+			});
+		}
+	}
 }
@@ -4,14 +4,21 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import transactionservice.tests.admission.AllAdmissionTests;
 import transactionservice.tests.exporter.AllExporterTests;
+import transactionservice.tests.monitoring.AllMonitoringTests;
+import transactionservice.tests.preload.AllPreloadTests;
+import transactionservice.tests.replication.AllReplicationTests;
+import transactionservice.tests.retention.AllRetentionTests;
 import transactionservice.tests.service.AllServiceTests;
 
 /**
  * @author Ekaterina Lobanova
  */
 @RunWith(Suite.class)
-@SuiteClasses({ AllExporterTests.class, AllServiceTests.class })
+@SuiteClasses({ AllExporterTests.class, AllServiceTests.class, AllReplicationTests.class,
+		AllAdmissionTests.class, AllPreloadTests.class, AllMonitoringTests.class,
+		AllRetentionTests.class })
 public class AllTests {
 
 }
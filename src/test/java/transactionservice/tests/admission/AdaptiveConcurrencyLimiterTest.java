@@ -0,0 +1,89 @@
+package transactionservice.tests.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.admission.AdaptiveConcurrencyLimiter;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class AdaptiveConcurrencyLimiterTest {
+	private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private AdaptiveConcurrencyLimiter limiter;
+
+	@Before
+	public void setUp() {
+		limiter = new AdaptiveConcurrencyLimiter(4, 2, 6, 10, 0.5);
+	}
+
+	@Test
+	public void testRejectsOverLimit() {
+		for (int i = 0; i < 4; i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+		assertFalse(limiter.tryAcquire());
+		assertEquals(4, limiter.getInFlight());
+	}
+
+	@Test
+	public void testIncreasesLimitWhenFastAndBusy() {
+		for (int i = 0; i < 4; i++) {
+			limiter.tryAcquire();
+		}
+		limiter.release(FAST_NANOS, false);
+
+		assertEquals(5, limiter.getLimit());
+		assertEquals(3, limiter.getInFlight());
+	}
+
+	@Test
+	public void testKeepsLimitWhenIdle() {
+		limiter.tryAcquire();
+		limiter.release(FAST_NANOS, false);
+
+		assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void testIncreasesLimitUpToMax() {
+		for (int round = 0; round < 10; round++) {
+			while (limiter.tryAcquire()) {
+			}
+			limiter.release(FAST_NANOS, false);
+		}
+
+		assertEquals(6, limiter.getLimit());
+	}
+
+	@Test
+	public void testDecreasesLimitWhenSlow() {
+		limiter.tryAcquire();
+		limiter.release(SLOW_NANOS, false);
+
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void testDecreasesLimitWhenFailedDownToMin() {
+		for (int i = 0; i < 5; i++) {
+			limiter.tryAcquire();
+			limiter.release(FAST_NANOS, true);
+		}
+
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLimits() {
+		new AdaptiveConcurrencyLimiter(1, 2, 6, 10, 0.5);
+	}
+}
@@ -0,0 +1,181 @@
+package transactionservice.tests.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import transactionservice.admission.AdmissionControlFilter;
+import transactionservice.admission.EndpointClass;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class AdmissionControlFilterTest {
+	private static final String POINT_READ_PATH = "/transactionservice/transaction/1";
+
+	@Test
+	public void testRefusalOfHandlerDoesNotCutLimit() throws IOException, ServletException {
+		AdmissionControlFilter filter = createFilter(Collections.emptyMap());
+		int initialLimit = filter.getLimiter(EndpointClass.POINT_READ).getLimit();
+
+		for (int i = 0; i < 10; i++) {
+			ResponseStub response = new ResponseStub();
+			filter.doFilter(request(POINT_READ_PATH), response.proxy(), (request, servletResponse) -> {
+				HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+				httpResponse.setStatus(HttpURLConnection.HTTP_UNAVAILABLE);
+				httpResponse.setHeader(AdmissionControlFilter.RETRY_AFTER_HEADER, "1");
+			});
+			assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, response.status);
+		}
+
+		assertTrue(filter.getLimiter(EndpointClass.POINT_READ).getLimit() >= initialLimit);
+	}
+
+	@Test
+	public void testFailureOfHandlerCutsLimit() throws IOException, ServletException {
+		AdmissionControlFilter filter = createFilter(Collections.emptyMap());
+		int initialLimit = filter.getLimiter(EndpointClass.POINT_READ).getLimit();
+
+		filter.doFilter(request(POINT_READ_PATH), new ResponseStub().proxy(),
+				(request, response) -> ((HttpServletResponse) response)
+						.setStatus(HttpURLConnection.HTTP_INTERNAL_ERROR));
+		try {
+			filter.doFilter(request(POINT_READ_PATH), new ResponseStub().proxy(), (request, response) -> {
+				throw new IllegalStateException("handler failed");
+			});
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+
+		assertTrue(filter.getLimiter(EndpointClass.POINT_READ).getLimit() < initialLimit);
+	}
+
+	@Test
+	public void testRejectsOverConcurrencyLimitWith503() throws IOException, ServletException {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("pointRead.initialLimit", "1");
+		parameters.put("pointRead.minLimit", "1");
+		parameters.put("pointRead.maxLimit", "1");
+		AdmissionControlFilter filter = createFilter(parameters);
+		ResponseStub nestedResponse = new ResponseStub();
+
+		// the nested request comes in while the outer one holds the only permit
+		filter.doFilter(request(POINT_READ_PATH), new ResponseStub().proxy(),
+				(request, response) -> filter.doFilter(request(POINT_READ_PATH), nestedResponse.proxy(),
+						(nestedRequest, nested) -> fail()));
+
+		assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, nestedResponse.status);
+		assertNotNull(nestedResponse.headers.get(AdmissionControlFilter.RETRY_AFTER_HEADER));
+		assertEquals(0, filter.getLimiter(EndpointClass.POINT_READ).getInFlight());
+	}
+
+	@Test
+	public void testRejectsOverClientRateWith429() throws IOException, ServletException {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put(AdmissionControlFilter.CLIENT_RATE_PARAMETER, "0.001");
+		parameters.put(AdmissionControlFilter.CLIENT_BURST_PARAMETER, "1");
+		AdmissionControlFilter filter = createFilter(parameters);
+
+		ResponseStub first = new ResponseStub();
+		filter.doFilter(request(POINT_READ_PATH), first.proxy(), (request, response) -> {
+		});
+		ResponseStub second = new ResponseStub();
+		filter.doFilter(request(POINT_READ_PATH), second.proxy(), (request, response) -> fail());
+
+		assertEquals(HttpURLConnection.HTTP_OK, first.status);
+		assertEquals(429, second.status);
+		assertTrue(Long.parseLong(second.headers.get(AdmissionControlFilter.RETRY_AFTER_HEADER)) > 1);
+	}
+
+	@Test
+	public void testPassesUnlimitedEndpoints() throws IOException, ServletException {
+		AdmissionControlFilter filter = createFilter(Collections.emptyMap());
+		boolean[] called = new boolean[1];
+
+		filter.doFilter(request("/transactionservice/replication/status"), new ResponseStub().proxy(),
+				(request, response) -> called[0] = true);
+
+		assertTrue(called[0]);
+	}
+
+	private AdmissionControlFilter createFilter(Map<String, String> parameters) throws ServletException {
+		AdmissionControlFilter filter = new AdmissionControlFilter();
+		filter.init((FilterConfig) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { FilterConfig.class }, (proxy, method, args) -> {
+					if ("getInitParameter".equals(method.getName())) {
+						return parameters.get(args[0]);
+					}
+					return null;
+				}));
+		return filter;
+	}
+
+	private HttpServletRequest request(String path) {
+		return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getMethod":
+						return "GET";
+					case "getPathInfo":
+						return path;
+					case "getServletPath":
+						return "";
+					case "getRemoteAddr":
+						return "127.0.0.1";
+					default:
+						return null;
+					}
+				});
+	}
+
+	/**
+	 * Records the status, the headers and the body length of a response.
+	 */
+	private static class ResponseStub {
+		private int status = HttpURLConnection.HTTP_OK;
+		private final Map<String, String> headers = new HashMap<>();
+		private int bodyLength;
+
+		HttpServletResponse proxy() {
+			return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "setStatus":
+							status = (Integer) args[0];
+							return null;
+						case "getStatus":
+							return status;
+						case "setHeader":
+							headers.put((String) args[0], (String) args[1]);
+							return null;
+						case "getOutputStream":
+							return new ServletOutputStream() {
+								@Override
+								public void write(int b) {
+									bodyLength++;
+								}
+							};
+						default:
+							return null;
+						}
+					});
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package transactionservice.tests.admission;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ AdaptiveConcurrencyLimiterTest.class, TokenBucketTest.class, EndpointClassTest.class,
+		ClientBucketCacheTest.class, AdmissionControlFilterTest.class })
+public class AllAdmissionTests {
+
+}
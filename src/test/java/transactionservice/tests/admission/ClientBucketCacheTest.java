@@ -0,0 +1,50 @@
+package transactionservice.tests.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.admission.ClientBucketCache;
+import transactionservice.admission.TokenBucket;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class ClientBucketCacheTest {
+	private ClientBucketCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new ClientBucketCache(1, 1, 2);
+	}
+
+	@Test
+	public void testKeepsBucketOfClient() {
+		TokenBucket bucket = cache.getBucket("first", 0);
+
+		assertSame(bucket, cache.getBucket("first", 0));
+	}
+
+	@Test
+	public void testIsBoundedByNumberOfClients() {
+		for (int i = 0; i < 1000; i++) {
+			cache.getBucket("client" + i, 0);
+		}
+
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testForgetsLeastRecentlySeenClient() {
+		TokenBucket first = cache.getBucket("first", 0);
+		TokenBucket second = cache.getBucket("second", 0);
+		cache.getBucket("first", 0);
+		cache.getBucket("third", 0);
+
+		assertSame(first, cache.getBucket("first", 0));
+		assertNotSame(second, cache.getBucket("second", 0));
+	}
+}
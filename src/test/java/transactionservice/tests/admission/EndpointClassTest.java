@@ -0,0 +1,42 @@
+package transactionservice.tests.admission;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import transactionservice.admission.EndpointClass;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class EndpointClassTest {
+
+	@Test
+	public void testClassify() {
+		assertEquals(EndpointClass.POINT_READ, EndpointClass.classify("GET", "/transactionservice/transaction/1"));
+		assertEquals(EndpointClass.WRITE, EndpointClass.classify("PUT", "/transactionservice/transaction/1"));
+		assertEquals(EndpointClass.SUM, EndpointClass.classify("GET", "/transactionservice/sum/1"));
+		assertEquals(EndpointClass.SUM, EndpointClass.classify("GET", "/transactionservice/subtree/1"));
+		assertEquals(EndpointClass.TYPE_QUERY, EndpointClass.classify("GET", "/transactionservice/types/cars"));
+		assertEquals(EndpointClass.RANGE, EndpointClass.classify("GET", "/transactionservice/amounts"));
+		assertEquals(EndpointClass.BATCH_READ, EndpointClass.classify("POST", "/transactionservice/transactions"));
+	}
+
+	@Test
+	public void testClassifyIgnoresPathParameters() {
+		assertEquals(EndpointClass.SUM, EndpointClass.classify("GET", "/transactionservice/sum;x=1/10"));
+		assertEquals(EndpointClass.TYPE_QUERY, EndpointClass.classify("GET", "/transactionservice/types;a=b/cars"));
+		assertEquals(EndpointClass.UNLIMITED,
+				EndpointClass.classify("GET", "/transactionservice/replication;x=1/status"));
+		assertEquals(EndpointClass.BATCH_READ,
+				EndpointClass.classify("POST", "/transactionservice;v=2/transactions;x=1"));
+	}
+
+	@Test
+	public void testClassifyUnlimited() {
+		assertEquals(EndpointClass.UNLIMITED, EndpointClass.classify("GET", "/index.jsp"));
+		assertEquals(EndpointClass.UNLIMITED, EndpointClass.classify("GET", null));
+		assertEquals(EndpointClass.UNLIMITED,
+				EndpointClass.classify("GET", "/transactionservice/replication/status"));
+	}
+}
@@ -0,0 +1,50 @@
+package transactionservice.tests.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.admission.TokenBucket;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class TokenBucketTest {
+	private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private TokenBucket bucket;
+
+	@Before
+	public void setUp() {
+		bucket = new TokenBucket(2, 3, 0);
+	}
+
+	@Test
+	public void testAdmitsBurst() {
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, bucket.tryAcquire(0));
+		}
+		assertTrue(bucket.tryAcquire(0) > 0);
+	}
+
+	@Test
+	public void testReportsWaitUntilNextToken() {
+		for (int i = 0; i < 3; i++) {
+			bucket.tryAcquire(0);
+		}
+
+		assertEquals(SECOND_NANOS / 2, bucket.tryAcquire(0));
+	}
+
+	@Test
+	public void testRefills() {
+		for (int i = 0; i < 3; i++) {
+			bucket.tryAcquire(0);
+		}
+		assertEquals(0, bucket.tryAcquire(SECOND_NANOS / 2));
+	}
+}
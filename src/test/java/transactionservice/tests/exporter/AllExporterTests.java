@@ -8,7 +8,7 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author Ekaterina Lobanova
  */
 @RunWith(Suite.class)
-@SuiteClasses({ JSONExporterTest.class })
+@SuiteClasses({ JSONExporterTest.class, BinaryExporterTest.class })
 public class AllExporterTests {
 
 }
@@ -0,0 +1,182 @@
+package transactionservice.tests.exporter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.exporter.BinaryExporter;
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.StatusEnum;
+import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.service.TransactionService;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class BinaryExporterTest {
+	private TransactionItem transaction;
+
+	@Before
+	public void setUp() throws IOException {
+		transaction = new TransactionItemBuilder().setTransactionId(2).setAmount(100).setType("firstType").build();
+	}
+
+	@Test
+	public void testExportNullTransactionToBinary() {
+		byte[] transactionAsBinary = BinaryExporter.getInstance().exportTransactionToBinary(null);
+		assertNotNull(transactionAsBinary);
+
+		assertEquals(1, transactionAsBinary.length);
+		assertNull(BinaryExporter.getInstance().exportFromBinary(transactionAsBinary));
+	}
+
+	@Test
+	public void testExportTransactionWithoutParentToBinary() {
+		byte[] transactionAsBinary = BinaryExporter.getInstance().exportTransactionToBinary(transaction);
+		TransactionItem item = BinaryExporter.getInstance().exportFromBinary(transactionAsBinary);
+		assertNotNull(item);
+
+		assertEquals(100, item.getAmount(), 0);
+		assertEquals("firstType", item.getType());
+		assertEquals(TransactionService.ABSENT_ID, item.getParentId());
+	}
+
+	@Test
+	public void testExportTransactionToBinary() {
+		long expectedParentId = 300;
+		transaction.setParentId(expectedParentId);
+		byte[] transactionAsBinary = BinaryExporter.getInstance().exportTransactionToBinary(transaction);
+		TransactionItem item = BinaryExporter.getInstance().exportFromBinary(transactionAsBinary);
+		assertNotNull(item);
+
+		assertEquals(100, item.getAmount(), 0);
+		assertEquals("firstType", item.getType());
+		assertEquals(expectedParentId, item.getParentId());
+	}
+
+	@Test
+	public void testExportTransactionWithoutTypeToBinary() {
+		transaction.setType(null);
+		byte[] transactionAsBinary = BinaryExporter.getInstance().exportTransactionToBinary(transaction);
+		TransactionItem item = BinaryExporter.getInstance().exportFromBinary(transactionAsBinary);
+		assertNotNull(item);
+
+		assertNull(item.getType());
+	}
+
+	@Test
+	public void testExportSumToBinary() {
+		byte[] sumAsBinary = BinaryExporter.getInstance().exportSumToBinary(100);
+		assertEquals(Double.BYTES, sumAsBinary.length);
+	}
+
+	@Test
+	public void testExportNullListToBinary() {
+		byte[] listAsBinary = BinaryExporter.getInstance().exportIdListToBinary(null);
+		assertTrue(BinaryExporter.getInstance().exportIdListFromBinary(listAsBinary).isEmpty());
+	}
+
+	@Test
+	public void testExportIdListToBinary() {
+		Set<Long> listOfIds = new HashSet<>();
+		listOfIds.add(1l);
+		listOfIds.add(128l);
+		listOfIds.add(Long.MAX_VALUE);
+		byte[] listAsBinary = BinaryExporter.getInstance().exportIdListToBinary(listOfIds);
+
+		assertEquals(listOfIds, BinaryExporter.getInstance().exportIdListFromBinary(listAsBinary));
+	}
+
+	@Test
+	public void testExportTransactionsByIdToBinary() {
+		Map<Long, TransactionItem> foundTransactions = new HashMap<>();
+		foundTransactions.put(2l, transaction);
+		byte[] resultAsBinary = BinaryExporter.getInstance().exportTransactionsByIdToBinary(Arrays.asList(9l, 2l),
+				foundTransactions);
+		Map<Long, TransactionItem> result = BinaryExporter.getInstance()
+				.exportTransactionsByIdFromBinary(resultAsBinary);
+
+		assertEquals(Arrays.asList(9l, 2l), Arrays.asList(result.keySet().toArray()));
+		assertNull(result.get(9l));
+		assertEquals(2, result.get(2l).getTransactionId());
+		assertEquals("firstType", result.get(2l).getType());
+	}
+
+	@Test
+	public void testExportNullStatusToBinary() {
+		assertEquals(0, BinaryExporter.getInstance().exportStatusToBinary(null).length);
+	}
+
+	@Test
+	public void testExportStatusToBinary() {
+		byte[] expectedStatus = { (byte) StatusEnum.OK.ordinal() };
+		assertArrayEquals(expectedStatus, BinaryExporter.getInstance().exportStatusToBinary(StatusEnum.OK));
+	}
+
+	@Test
+	public void testExportFromBinaryWhenBytesAreNull() {
+		assertNull(BinaryExporter.getInstance().exportFromBinary(null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExportFromBinaryWhenTruncated() {
+		byte[] transactionAsBinary = BinaryExporter.getInstance().exportTransactionToBinary(transaction);
+		byte[] truncated = new byte[transactionAsBinary.length - 1];
+		System.arraycopy(transactionAsBinary, 0, truncated, 0, truncated.length);
+		BinaryExporter.getInstance().exportFromBinary(truncated);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExportFromBinaryWhenTypeLengthIsNegative() {
+		// flags, amount and a 10 byte varint of -1 as the type length
+		byte[] binary = new byte[] { BinaryExporter.PRESENT_FLAG | BinaryExporter.TYPE_FLAG, 0, 0, 0, 0, 0, 0, 0, 0,
+				-1, -1, -1, -1, -1, -1, -1, -1, -1, 1 };
+		BinaryExporter.getInstance().exportFromBinary(binary);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExportFromBinaryWhenTypeLengthExceedsBytes() {
+		// flags, amount and 2^31 - 1 as the type length followed by no bytes
+		byte[] binary = new byte[] { BinaryExporter.PRESENT_FLAG | BinaryExporter.TYPE_FLAG, 0, 0, 0, 0, 0, 0, 0, 0,
+				-1, -1, -1, -1, 7 };
+		BinaryExporter.getInstance().exportFromBinary(binary);
+	}
+
+	@Test
+	public void testTransactionPayloadIsSmallerThanJSON() {
+		transaction.setParentId(123456789l);
+		transaction.setAmount(1234.5678);
+		int jsonSize = JSONExporter.getInstance().exportTransactionToJSON(transaction).toString()
+				.getBytes(StandardCharsets.UTF_8).length;
+		int binarySize = BinaryExporter.getInstance().exportTransactionToBinary(transaction).length;
+
+		assertTrue(binarySize < jsonSize);
+	}
+
+	@Test
+	public void testIdListPayloadIsSmallerThanJSON() {
+		Set<Long> listOfIds = new HashSet<>();
+		for (long id = 1_000_000; id < 1_001_000; id++) {
+			listOfIds.add(id);
+		}
+		int jsonSize = JSONExporter.getInstance().exportIdListToJSON(listOfIds).toString()
+				.getBytes(StandardCharsets.UTF_8).length;
+		int binarySize = BinaryExporter.getInstance().exportIdListToBinary(listOfIds).length;
+
+		assertTrue(binarySize * 2 < jsonSize);
+	}
+}
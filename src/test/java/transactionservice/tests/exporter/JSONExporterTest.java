@@ -7,10 +7,17 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +26,7 @@ import transactionservice.exporter.JSONExporter;
 import transactionservice.model.StatusEnum;
 import transactionservice.model.TransactionItem;
 import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.service.AmountIndexKey;
 import transactionservice.service.TransactionService;
 
 /**
@@ -159,4 +167,128 @@ public class JSONExporterTest {
 		assertEquals("sometype", item.getType());
 		assertEquals(7, item.getParentId());
 	}
+
+	@Test
+	public void testExportTransactionsByIdToJSON() {
+		Set<Long> transactionIds = new LinkedHashSet<>();
+		transactionIds.add(2l);
+		transactionIds.add(9l);
+		Map<Long, TransactionItem> foundTransactions = new HashMap<>();
+		foundTransactions.put(2l, transaction);
+
+		StringWriter writer = new StringWriter();
+		JSONExporter.getInstance().exportTransactionsByIdToJSON(transactionIds, foundTransactions, writer);
+		JSONObject resultAsJSON = new JSONObject(writer.toString());
+
+		JSONObject transactionsAsJSON = resultAsJSON.getJSONObject(JSONExporter.TRANSACTIONS_PROPERTY);
+		assertEquals(1, transactionsAsJSON.length());
+		assertEquals(100, transactionsAsJSON.getJSONObject("2").getDouble(JSONExporter.AMOUNT_PROPERTY), 0);
+		JSONArray missingAsJSON = resultAsJSON.getJSONArray(JSONExporter.MISSING_PROPERTY);
+		assertEquals(1, missingAsJSON.length());
+		assertEquals(9, missingAsJSON.getLong(0));
+	}
+
+	@Test
+	public void testExportIdListFromJSON() {
+		Set<Long> transactionIds = JSONExporter.getInstance().exportIdListFromJSON("[3,1,3]");
+
+		assertEquals(2, transactionIds.size());
+		assertEquals(Long.valueOf(3), transactionIds.iterator().next());
+	}
+
+	@Test(expected = JSONException.class)
+	public void testExportIdListFromMalformedJSON() {
+		JSONExporter.getInstance().exportIdListFromJSON("[\"notAnId\"]");
+	}
+
+	@Test
+	public void testExportNestedSubtreeToJSON() {
+		StringWriter writer = new StringWriter();
+		addSubtreeTransactionItems();
+		TransactionService.getInstance().visitSubtree(301,
+				JSONExporter.getInstance().createSubtreeJSONWriter(writer, true));
+		JSONObject rootAsJSON = new JSONObject(writer.toString());
+
+		assertEquals(301, rootAsJSON.getLong(JSONExporter.TRANSACTION_ID_PROPERTY));
+		assertEquals(60, rootAsJSON.getDouble(JSONExporter.SUM_PROPERTY), 0);
+		JSONArray childrenAsJSON = rootAsJSON.getJSONArray(JSONExporter.CHILDREN_PROPERTY);
+		assertEquals(1, childrenAsJSON.length());
+
+		JSONObject childAsJSON = childrenAsJSON.getJSONObject(0);
+		assertEquals(302, childAsJSON.getLong(JSONExporter.TRANSACTION_ID_PROPERTY));
+		assertEquals(301, childAsJSON.getLong(JSONExporter.PARENT_ID_PROPERTY));
+		assertEquals("subtreeType", childAsJSON.getString(JSONExporter.TYPE_PROPERTY));
+		assertEquals(40, childAsJSON.getDouble(JSONExporter.SUM_PROPERTY), 0);
+		assertEquals(2, childAsJSON.getJSONArray(JSONExporter.CHILDREN_PROPERTY).length());
+	}
+
+	@Test
+	public void testExportFlatSubtreeToJSON() {
+		StringWriter writer = new StringWriter();
+		addSubtreeTransactionItems();
+		TransactionService.getInstance().visitSubtree(302,
+				JSONExporter.getInstance().createSubtreeJSONWriter(writer, false));
+		JSONObject subtreeAsJSON = new JSONObject(writer.toString());
+
+		JSONArray transactionsAsJSON = subtreeAsJSON.getJSONArray(JSONExporter.TRANSACTIONS_PROPERTY);
+		assertEquals(3, transactionsAsJSON.length());
+		JSONObject rootAsJSON = transactionsAsJSON.getJSONObject(2);
+		assertEquals(302, rootAsJSON.getLong(JSONExporter.TRANSACTION_ID_PROPERTY));
+		assertEquals(40, rootAsJSON.getDouble(JSONExporter.SUM_PROPERTY), 0);
+	}
+
+	@Test
+	public void testExportAbsentSubtreeToJSON() {
+		StringWriter writer = new StringWriter();
+		TransactionService.getInstance().visitSubtree(399,
+				JSONExporter.getInstance().createSubtreeJSONWriter(writer, true));
+		JSONObject rootAsJSON = new JSONObject(writer.toString());
+
+		assertFalse(rootAsJSON.has(JSONExporter.AMOUNT_PROPERTY));
+		assertEquals(0, rootAsJSON.getJSONArray(JSONExporter.CHILDREN_PROPERTY).length());
+		assertEquals(0, rootAsJSON.getDouble(JSONExporter.SUM_PROPERTY), 0);
+	}
+
+	private void addSubtreeTransactionItems() {
+		TransactionService.getInstance()
+				.addTransaction(new TransactionItemBuilder().setTransactionId(301).setAmount(5).build());
+		TransactionService.getInstance().addTransaction(new TransactionItemBuilder().setTransactionId(302)
+				.setParentId(301).setAmount(20).setType("subtreeType").build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(303).setParentId(302).setAmount(15).build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(304).setParentId(302).setAmount(25).build());
+	}
+
+	@Test
+	public void testExportAmountRangeToJSON() {
+		NavigableMap<AmountIndexKey, TransactionItem> range = new TreeMap<>();
+		range.put(new AmountIndexKey(100, 2), transaction);
+		range.put(new AmountIndexKey(200, 3),
+				new TransactionItemBuilder().setTransactionId(3).setAmount(200).setParentId(2).build());
+		range.put(new AmountIndexKey(300, 4), new TransactionItemBuilder().setTransactionId(4).setAmount(300).build());
+
+		StringWriter writer = new StringWriter();
+		JSONExporter.getInstance().exportAmountRangeToJSON(range, 2, writer);
+		JSONObject pageAsJSON = new JSONObject(writer.toString());
+
+		JSONArray transactionsAsJSON = pageAsJSON.getJSONArray(JSONExporter.TRANSACTIONS_PROPERTY);
+		assertEquals(2, transactionsAsJSON.length());
+		assertEquals(2, transactionsAsJSON.getJSONObject(0).getLong(JSONExporter.TRANSACTION_ID_PROPERTY));
+		assertEquals(2, transactionsAsJSON.getJSONObject(1).getLong(JSONExporter.PARENT_ID_PROPERTY));
+		assertEquals(new AmountIndexKey(200, 3).toCursor(), pageAsJSON.getString(JSONExporter.NEXT_CURSOR_PROPERTY));
+	}
+
+	@Test
+	public void testExportLastAmountRangePageToJSON() {
+		NavigableMap<AmountIndexKey, TransactionItem> range = new TreeMap<>();
+		range.put(new AmountIndexKey(100, 2), transaction);
+
+		StringWriter writer = new StringWriter();
+		JSONExporter.getInstance().exportAmountRangeToJSON(range, 2, writer);
+		JSONObject pageAsJSON = new JSONObject(writer.toString());
+
+		assertEquals(1, pageAsJSON.getJSONArray(JSONExporter.TRANSACTIONS_PROPERTY).length());
+		assertFalse(pageAsJSON.has(JSONExporter.NEXT_CURSOR_PROPERTY));
+	}
 }
@@ -0,0 +1,108 @@
+package transactionservice.tests.exporter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+import transactionservice.exporter.BinaryExporter;
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+
+/**
+ * Compares the cost of the JSON and the binary formats: serializes and
+ * parses N transactions and a list of 1000 ids with both exporters and prints
+ * the time per operation and the encoded size. It is not a unit test and is
+ * run by hand after the test classes are compiled:
+ *
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes:$HOME/.m2/repository/org/json/json/20160212/json-20160212.jar \
+ *     transactionservice.tests.exporter.SerializationBenchmark [transactions] [rounds]
+ * </pre>
+ *
+ * Every operation is warmed up for the same number of rounds as it is
+ * measured, the fastest round is reported.
+ *
+ * @author Ekaterina Lobanova
+ */
+public class SerializationBenchmark {
+	private static final int DEFAULT_TRANSACTIONS = 100000;
+	private static final int DEFAULT_ROUNDS = 10;
+	private static final int ID_LIST_SIZE = 1000;
+	private static final int ID_LIST_REPEATS = 100;
+	private static final String[] TYPES = { "cars", "shopping", "travel", "groceries" };
+
+	// keeps the results reachable so the measured work cannot be eliminated
+	private static long sink;
+
+	public static void main(String[] args) {
+		int transactionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TRANSACTIONS;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		JSONExporter jsonExporter = JSONExporter.getInstance();
+		BinaryExporter binaryExporter = BinaryExporter.getInstance();
+
+		TransactionItem[] transactions = new TransactionItem[transactionCount];
+		String[] jsonTransactions = new String[transactionCount];
+		byte[][] binaryTransactions = new byte[transactionCount][];
+		long jsonTransactionBytes = 0;
+		long binaryTransactionBytes = 0;
+		for (int i = 0; i < transactionCount; i++) {
+			TransactionItemBuilder builder = new TransactionItemBuilder().setTransactionId(i)
+					.setAmount(i * 1.25).setType(TYPES[i % TYPES.length]);
+			if (i > 0) {
+				builder.setParentId(i / 2);
+			}
+			transactions[i] = builder.build();
+			jsonTransactions[i] = jsonExporter.exportTransactionToJSON(transactions[i]).toString();
+			binaryTransactions[i] = binaryExporter.exportTransactionToBinary(transactions[i]);
+			jsonTransactionBytes += jsonTransactions[i].getBytes(StandardCharsets.UTF_8).length;
+			binaryTransactionBytes += binaryTransactions[i].length;
+		}
+
+		Set<Long> ids = new LinkedHashSet<>();
+		for (long i = 0; i < ID_LIST_SIZE; i++) {
+			ids.add(1000000L + i * 7919);
+		}
+		String jsonIds = jsonExporter.exportIdListToJSON(ids).toString();
+		byte[] binaryIds = binaryExporter.exportIdListToBinary(ids);
+
+		System.out.printf("%d transactions, %d ids, best of %d rounds%n", transactionCount, ID_LIST_SIZE, rounds);
+		System.out.printf("%-32s %12s %12s%n", "operation", "ns/op", "bytes/op");
+		report("transaction to JSON", rounds, transactionCount, jsonTransactionBytes / transactionCount,
+				i -> jsonExporter.exportTransactionToJSON(transactions[i]).toString().length());
+		report("transaction to binary", rounds, transactionCount, binaryTransactionBytes / transactionCount,
+				i -> binaryExporter.exportTransactionToBinary(transactions[i]).length);
+		report("transaction from JSON", rounds, transactionCount, jsonTransactionBytes / transactionCount,
+				i -> (int) jsonExporter.exportFromJSON(jsonTransactions[i]).getTransactionId());
+		report("transaction from binary", rounds, transactionCount, binaryTransactionBytes / transactionCount,
+				i -> (int) binaryExporter.exportFromBinary(binaryTransactions[i]).getTransactionId());
+		report("1000 ids to JSON", rounds, ID_LIST_REPEATS, jsonIds.getBytes(StandardCharsets.UTF_8).length,
+				i -> jsonExporter.exportIdListToJSON(ids).toString().length());
+		report("1000 ids to binary", rounds, ID_LIST_REPEATS, binaryIds.length,
+				i -> binaryExporter.exportIdListToBinary(ids).length);
+		report("1000 ids from JSON", rounds, ID_LIST_REPEATS, jsonIds.getBytes(StandardCharsets.UTF_8).length,
+				i -> jsonExporter.exportIdListFromJSON(jsonIds).size());
+		report("1000 ids from binary", rounds, ID_LIST_REPEATS, binaryIds.length,
+				i -> binaryExporter.exportIdListFromBinary(binaryIds).size());
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private static void report(String name, int rounds, int operations, long bytes, IntUnaryOperator operation) {
+		long bestNanos = Long.MAX_VALUE;
+		for (int round = 0; round < 2 * rounds; round++) {
+			long startNanos = System.nanoTime();
+			for (int i = 0; i < operations; i++) {
+				sink += operation.applyAsInt(i);
+			}
+			long elapsedNanos = System.nanoTime() - startNanos;
+			if (round >= rounds) {
+				bestNanos = Math.min(bestNanos, elapsedNanos);
+			}
+		}
+		System.out.printf("%-32s %12d %12d%n", name, bestNanos / operations, bytes);
+	}
+}
@@ -0,0 +1,14 @@
+package transactionservice.tests.monitoring;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ FlightRecorderEventsTest.class })
+public class AllMonitoringTests {
+
+}
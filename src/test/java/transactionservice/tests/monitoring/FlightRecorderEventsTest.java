@@ -0,0 +1,109 @@
+package transactionservice.tests.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.monitoring.BatchLookupEvent;
+import transactionservice.monitoring.SumQueryEvent;
+import transactionservice.monitoring.TypeQueryEvent;
+import transactionservice.service.TransactionService;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class FlightRecorderEventsTest {
+	private static final long ROOT_ID = 9_000_000;
+	private static final String TYPE = "flightRecorderType";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		TransactionService service = TransactionService.getInstance();
+		service.addTransaction(new TransactionItemBuilder().setTransactionId(ROOT_ID).setAmount(10)
+				.setType(TYPE).build());
+		service.addTransaction(new TransactionItemBuilder().setTransactionId(ROOT_ID + 1).setAmount(20)
+				.setType(TYPE).setParentId(ROOT_ID).build());
+		service.addTransaction(new TransactionItemBuilder().setTransactionId(ROOT_ID + 2).setAmount(30)
+				.setParentId(ROOT_ID + 1).build());
+	}
+
+	@After
+	public void tearDown() {
+		for (long id = ROOT_ID; id <= ROOT_ID + 2; id++) {
+			TransactionService.getInstance().removeTransaction(id);
+		}
+	}
+
+	@Test
+	public void testServiceEventsAreRecorded() throws IOException {
+		List<RecordedEvent> events = record(Duration.ZERO, () -> {
+			TransactionService.getInstance().getSumOfTransactionsLinkedTo(ROOT_ID);
+			TransactionService.getInstance().getTransactionIdsOfType(TYPE);
+			TransactionService.getInstance().getTransactionsByIds(Arrays.asList(ROOT_ID, ROOT_ID + 5));
+		});
+
+		RecordedEvent sumEvent = single(events, "transactionservice.SumQuery");
+		assertEquals(ROOT_ID, sumEvent.getLong("rootId"));
+		assertEquals(2, sumEvent.getLong("visitedNodes"));
+
+		RecordedEvent typeEvent = single(events, "transactionservice.TypeQuery");
+		assertEquals(TYPE, typeEvent.getString("type"));
+		assertEquals(2, typeEvent.getInt("resultSize"));
+
+		RecordedEvent batchEvent = single(events, "transactionservice.BatchLookup");
+		assertEquals(2, batchEvent.getInt("requestedIds"));
+		assertEquals(1, batchEvent.getInt("foundTransactions"));
+	}
+
+	@Test
+	public void testEventsBelowThresholdAreNotRecorded() throws IOException {
+		List<RecordedEvent> events = record(Duration.ofHours(1), () -> {
+			TransactionService.getInstance().getSumOfTransactionsLinkedTo(ROOT_ID);
+			TransactionService.getInstance().getTransactionIdsOfType(TYPE);
+		});
+
+		assertTrue(events.isEmpty());
+	}
+
+	private List<RecordedEvent> record(Duration threshold, Runnable action) throws IOException {
+		Path file = folder.newFile("events.jfr").toPath();
+		try (Recording recording = new Recording()) {
+			recording.enable(SumQueryEvent.class).withThreshold(threshold);
+			recording.enable(TypeQueryEvent.class).withThreshold(threshold);
+			recording.enable(BatchLookupEvent.class).withThreshold(threshold);
+			recording.start();
+			action.run();
+			recording.stop();
+			recording.dump(file);
+		}
+		return RecordingFile.readAllEvents(file).stream()
+				.filter(event -> event.getEventType().getName().startsWith("transactionservice."))
+				.collect(Collectors.toList());
+	}
+
+	private RecordedEvent single(List<RecordedEvent> events, String name) {
+		List<RecordedEvent> matching = events.stream().filter(event -> event.getEventType().getName().equals(name))
+				.collect(Collectors.toList());
+		assertEquals(1, matching.size());
+		return matching.get(0);
+	}
+}
@@ -0,0 +1,133 @@
+package transactionservice.tests.preload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import transactionservice.model.TransactionItem;
+import transactionservice.preload.BulkPreloader;
+import transactionservice.preload.PreloadReport;
+import transactionservice.service.TransactionService;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class BulkPreloaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		for (long id = 501; id <= 599; id++) {
+			TransactionService.getInstance().removeTransaction(id);
+		}
+	}
+
+	@Test
+	public void testPreloadNDJSON() throws IOException {
+		Path file = write("transactions.ndjson", "{\"transaction_id\":501,\"amount\":10,\"type\":\"preloaded\"}",
+				"{\"transaction_id\":502,\"amount\":20,\"parent_id\":501}", "", "{\"amount\":30}", "not json",
+				"{\"transaction_id\":503,\"amount\":40,\"parent_id\":502}");
+
+		PreloadReport report = new BulkPreloader(2, 16).preload(Collections.singletonList(file));
+
+		assertEquals(3, report.getLoadedRows());
+		assertEquals(2, report.getRejectedRows());
+		assertEquals(2, report.getRejectedLines().size());
+		assertEquals(4, report.getRejectedLines().get(0).getLineNumber());
+		assertEquals(5, report.getRejectedLines().get(1).getLineNumber());
+		assertTrue(report.getRowsPerSecond() > 0);
+
+		TransactionItem transaction = TransactionService.getInstance().getTransactions().get(502l);
+		assertNotNull(transaction);
+		assertEquals(501, transaction.getParentId());
+		assertEquals(60, TransactionService.getInstance().getSumOfTransactionsLinkedTo(501), 0);
+	}
+
+	@Test
+	public void testPreloadCSV() throws IOException {
+		Path file = write("transactions.csv", "transaction_id,amount,type,parent_id", "511,1.5,preloaded,",
+				"512,2.5,,511", "513,abc,preloaded,", "514,3.5\r");
+
+		PreloadReport report = new BulkPreloader(4, 8).preload(Collections.singletonList(file));
+
+		assertEquals(3, report.getLoadedRows());
+		assertEquals(1, report.getRejectedRows());
+		assertEquals(4, report.getRejectedLines().get(0).getLineNumber());
+		assertEquals(file, report.getRejectedLines().get(0).getFile());
+		assertEquals(2.5, TransactionService.getInstance().getSumOfTransactionsLinkedTo(511), 0);
+		assertEquals(1, TransactionService.getInstance().getTransactionsInAmountRange(0, 10, "preloaded", null)
+				.size());
+	}
+
+	@Test
+	public void testPreloadSeveralFiles() throws IOException {
+		Path ndjson = write("first.jsonl", "{\"transaction_id\":521,\"amount\":1}");
+		Path csv = write("second.csv", "522,2,,521", "bad");
+		List<Path> files = Arrays.asList(ndjson, csv);
+
+		PreloadReport report = new BulkPreloader().preload(files);
+
+		assertEquals(2, report.getLoadedRows());
+		assertEquals(2, report.getRejectedLines().get(0).getLineNumber());
+		assertEquals(csv, report.getRejectedLines().get(0).getFile());
+		assertEquals(2, TransactionService.getInstance().getSumOfTransactionsLinkedTo(521), 0);
+	}
+
+	@Test
+	public void testPreloadKeepsLastRowOfId() throws IOException {
+		String[] lines = new String[400];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = "531," + i + ",,";
+		}
+		Path first = write("history.csv", lines);
+		Path second = write("replay.csv", "532,1,,", "531,1000,,", "532,2,,");
+
+		for (int attempt = 0; attempt < 5; attempt++) {
+			new BulkPreloader(4, 64).preload(Collections.singletonList(first));
+			assertEquals(399, TransactionService.getInstance().getTransactions().get(531l).getAmount(), 0);
+
+			new BulkPreloader(4, 8).preload(Arrays.asList(second, first));
+			assertEquals(399, TransactionService.getInstance().getTransactions().get(531l).getAmount(), 0);
+			assertEquals(2, TransactionService.getInstance().getTransactions().get(532l).getAmount(), 0);
+		}
+	}
+
+	@Test
+	public void testLaterPreloadReplacesRowsOfEarlierOne() throws IOException {
+		String[] lines = new String[100];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = "541," + i + ",,";
+		}
+		new BulkPreloader(4, 16).preload(Collections.singletonList(write("history.csv", lines)));
+		assertEquals(99, TransactionService.getInstance().getTransactions().get(541l).getAmount(), 0);
+
+		new BulkPreloader(4, 16).preload(Collections.singletonList(write("correction.csv", "541,1000,,")));
+		assertEquals(1000, TransactionService.getInstance().getTransactions().get(541l).getAmount(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPreloadUnknownFormat() throws IOException {
+		new BulkPreloader().preload(Collections.singletonList(write("transactions.txt", "1,1")));
+	}
+
+	private Path write(String name, String... lines) throws IOException {
+		File file = folder.newFile(name);
+		Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+		return file.toPath();
+	}
+}
@@ -0,0 +1,88 @@
+package transactionservice.tests.preload;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import transactionservice.preload.BulkPreloader;
+import transactionservice.preload.PreloadReport;
+
+/**
+ * Measures the preload: writes N generated rows to a CSV and to an NDJSON
+ * file, loads every file with one thread and with one thread per processor and
+ * prints the time and the rows per second of every run, including the build
+ * of the indexes. It is not a unit test and is run by hand after the test
+ * classes are compiled:
+ *
+ * <pre>
+ * mvn -q test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes:$HOME/.m2/repository/org/json/json/20160212/json-20160212.jar \
+ *     transactionservice.tests.preload.PreloadBenchmark [rows] [runs]
+ * </pre>
+ *
+ * The first run of every configuration warms up the JVM, the fastest of the
+ * other runs is reported.
+ *
+ * @author Ekaterina Lobanova
+ */
+public class PreloadBenchmark {
+	private static final int DEFAULT_ROWS = 1000000;
+	private static final int DEFAULT_RUNS = 3;
+	// small enough to give every thread several chunks of the generated files
+	private static final long CHUNK_BYTES = 4L << 20;
+	private static final String[] TYPES = { "cars", "shopping", "travel", "groceries" };
+
+	public static void main(String[] args) throws IOException {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+		int processors = Runtime.getRuntime().availableProcessors();
+		Path directory = Files.createTempDirectory("preload-benchmark");
+		Path csv = directory.resolve("transactions.csv");
+		Path ndjson = directory.resolve("transactions.ndjson");
+		try {
+			write(csv, rows, false);
+			write(ndjson, rows, true);
+
+			System.out.printf("%d rows, %d processors, best of %d runs%n", rows, processors, runs);
+			System.out.printf("%-8s %8s %12s %14s%n", "format", "threads", "millis", "rows/sec");
+			for (Path file : new Path[] { csv, ndjson }) {
+				for (int parallelism : processors == 1 ? new int[] { 1 } : new int[] { 1, processors }) {
+					PreloadReport best = null;
+					for (int run = 0; run <= runs; run++) {
+						PreloadReport report = new BulkPreloader(parallelism, CHUNK_BYTES)
+								.preload(Collections.singletonList(file));
+						if (run > 0 && (best == null || report.getElapsedNanos() < best.getElapsedNanos())) {
+							best = report;
+						}
+					}
+					System.out.printf("%-8s %8d %12d %14.0f%n", file == csv ? "CSV" : "NDJSON", parallelism,
+							best.getElapsedNanos() / 1000000, best.getRowsPerSecond());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(csv);
+			Files.deleteIfExists(ndjson);
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	private static void write(Path file, int rows, boolean json) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 1; i <= rows; i++) {
+				String type = TYPES[i % TYPES.length];
+				long parentId = i / 2;
+				double amount = (i % 10000) / 100.0;
+				if (json) {
+					writer.write("{\"transaction_id\":" + i + ",\"amount\":" + amount + ",\"type\":\"" + type + "\""
+							+ (parentId > 0 ? ",\"parent_id\":" + parentId : "") + "}");
+				} else {
+					writer.write(i + "," + amount + "," + type + "," + (parentId > 0 ? parentId : ""));
+				}
+				writer.write('\n');
+			}
+		}
+	}
+}
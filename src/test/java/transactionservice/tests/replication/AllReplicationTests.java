@@ -0,0 +1,14 @@
+package transactionservice.tests.replication;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ ChangeLogTest.class, ReplicationFollowerTest.class, ReplicationFilterTest.class })
+public class AllReplicationTests {
+
+}
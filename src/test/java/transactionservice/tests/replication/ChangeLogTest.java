@@ -0,0 +1,95 @@
+package transactionservice.tests.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.model.ChangeLogEntry;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.replication.ChangeLog;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class ChangeLogTest {
+	private ChangeLog changeLog;
+
+	@Before
+	public void setUp() {
+		changeLog = new ChangeLog(3);
+	}
+
+	@Test
+	public void testAppend() {
+		assertEquals(1, changeLog.append(1, new TransactionItemBuilder().setTransactionId(1).build()));
+		assertEquals(2, changeLog.append(1, null));
+
+		List<ChangeLogEntry> entries = changeLog.readFrom(1, 10);
+		assertNotNull(entries);
+		assertEquals(2, entries.size());
+		assertEquals(1, entries.get(0).getSequence());
+		assertTrue(entries.get(1).isRemoval());
+	}
+
+	@Test
+	public void testReadFromWithLimit() {
+		for (long id = 1; id <= 3; id++) {
+			changeLog.append(id, new TransactionItemBuilder().setTransactionId(id).build());
+		}
+
+		List<ChangeLogEntry> entries = changeLog.readFrom(2, 1);
+		assertEquals(1, entries.size());
+		assertEquals(2, entries.get(0).getTransactionId());
+	}
+
+	@Test
+	public void testReadFromHead() {
+		changeLog.append(1, new TransactionItemBuilder().setTransactionId(1).build());
+
+		assertTrue(changeLog.readFrom(2, 10).isEmpty());
+	}
+
+	@Test
+	public void testReadFromBeyondHead() {
+		changeLog.append(1, new TransactionItemBuilder().setTransactionId(1).build());
+
+		assertNull(changeLog.readFrom(5, 10));
+	}
+
+	@Test
+	public void testReadFromTrimmedEntries() {
+		for (long id = 1; id <= 5; id++) {
+			changeLog.append(id, new TransactionItemBuilder().setTransactionId(id).build());
+		}
+
+		assertEquals(3, changeLog.getOldestSequence());
+		assertNull(changeLog.readFrom(2, 10));
+		assertEquals(3, changeLog.readFrom(3, 10).size());
+	}
+
+	@Test
+	public void testTruncate() {
+		changeLog.append(1, new TransactionItemBuilder().setTransactionId(1).build());
+		changeLog.truncate();
+
+		assertNull(changeLog.readFrom(1, 10));
+		assertNull(changeLog.readFrom(2, 10));
+		assertTrue(changeLog.readFrom(3, 10).isEmpty());
+	}
+
+	@Test
+	public void testTruncateFreshLog() {
+		changeLog.truncate();
+
+		assertEquals(1, changeLog.getHeadSequence());
+		assertNull(changeLog.readFrom(1, 10));
+		assertTrue(changeLog.readFrom(2, 10).isEmpty());
+		assertEquals(2, changeLog.append(1, null));
+	}
+}
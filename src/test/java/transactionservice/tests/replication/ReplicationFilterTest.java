@@ -0,0 +1,33 @@
+package transactionservice.tests.replication;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import transactionservice.replication.ReplicationFilter;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class ReplicationFilterTest {
+
+	@Test
+	public void testGetIsRead() {
+		assertTrue(ReplicationFilter.isRead("GET", "transactionservice/transaction/1"));
+		assertTrue(ReplicationFilter.isRead("HEAD", "transactionservice/sum/1"));
+	}
+
+	@Test
+	public void testBatchLookupPostIsRead() {
+		assertTrue(ReplicationFilter.isRead("POST", "transactionservice/transactions"));
+		assertTrue(ReplicationFilter.isRead("POST", "/transactionservice/transactions/"));
+	}
+
+	@Test
+	public void testWritesAreNotRead() {
+		assertFalse(ReplicationFilter.isRead("PUT", "transactionservice/transaction/1"));
+		assertFalse(ReplicationFilter.isRead("POST", "transactionservice/transaction/1"));
+		assertFalse(ReplicationFilter.isRead("DELETE", "transactionservice/transactions"));
+	}
+}
@@ -0,0 +1,373 @@
+package transactionservice.tests.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import transactionservice.exporter.JSONExporter;
+import transactionservice.model.ChangeLogEntry;
+import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.replication.ChangeLog;
+import transactionservice.replication.ReplicationFollower;
+import transactionservice.service.AmountIndexKey;
+import transactionservice.service.TransactionChangeListener;
+import transactionservice.service.TransactionService;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class ReplicationFollowerTest {
+	private ChangeLog leaderLog;
+	private HttpServer leader;
+
+	@Before
+	public void setUp() {
+		leaderLog = new ChangeLog(100);
+		leaderLog.append(201, new TransactionItemBuilder().setTransactionId(201).setAmount(10).setType("replicated")
+				.build());
+		leaderLog.append(202, new TransactionItemBuilder().setTransactionId(202).setAmount(20).setParentId(201)
+				.build());
+	}
+
+	@After
+	public void tearDown() {
+		if (leader != null) {
+			leader.stop(0);
+		}
+		TransactionService.getInstance().removeTransaction(201);
+		TransactionService.getInstance().removeTransaction(202);
+		TransactionService.getInstance().removeTransaction(203);
+		TransactionService.getInstance().removeTransaction(204);
+	}
+
+	@Test
+	public void testApplyBatch() {
+		ReplicationFollower follower = new ReplicationFollower("http://localhost:1", 100, 10);
+		long requestMillis = System.currentTimeMillis();
+		follower.applyBatch(exportLog(leaderLog.readFrom(1, 10), false), requestMillis);
+
+		assertEquals(2, follower.getAppliedSequence());
+		assertTrue(follower.isCaughtUp());
+		assertEquals(0, follower.getLagEntries());
+
+		TransactionItem replicated = TransactionService.getInstance().getTransactions().get(202l);
+		assertNotNull(replicated);
+		assertEquals(20, replicated.getAmount(), 0);
+		assertEquals(201, replicated.getParentId());
+	}
+
+	@Test
+	public void testApplyPartialBatch() {
+		ReplicationFollower follower = new ReplicationFollower("http://localhost:1", 100, 1);
+		follower.applyBatch(exportLog(leaderLog.readFrom(1, 1), false), System.currentTimeMillis());
+
+		assertEquals(1, follower.getAppliedSequence());
+		assertFalse(follower.isCaughtUp());
+		assertEquals(1, follower.getLagEntries());
+		assertEquals(Long.MAX_VALUE, follower.getLagMillis());
+	}
+
+	@Test
+	public void testApplyRemoval() {
+		leaderLog.append(202, null);
+		ReplicationFollower follower = new ReplicationFollower("http://localhost:1", 100, 10);
+		follower.applyBatch(exportLog(leaderLog.readFrom(1, 10), false), System.currentTimeMillis());
+
+		assertNotNull(TransactionService.getInstance().getTransactions().get(201l));
+		assertNull(TransactionService.getInstance().getTransactions().get(202l));
+	}
+
+	@Test
+	public void testApplySnapshotRemovesStaleTransactions() {
+		TransactionService.getInstance()
+				.addTransaction(new TransactionItemBuilder().setTransactionId(203).setAmount(30).build());
+		ChangeLogEntry snapshotEntry = new ChangeLogEntry(leaderLog.getHeadSequence(), 201,
+				new TransactionItemBuilder().setTransactionId(201).setAmount(10).build());
+		ReplicationFollower follower = new ReplicationFollower("http://localhost:1", 100, 10);
+		follower.applyBatch(exportLog(Collections.singletonList(snapshotEntry), true), System.currentTimeMillis());
+
+		assertEquals(leaderLog.getHeadSequence(), follower.getAppliedSequence());
+		assertNotNull(TransactionService.getInstance().getTransactions().get(201l));
+		assertNull(TransactionService.getInstance().getTransactions().get(203l));
+	}
+
+	@Test
+	public void testApplySnapshotInPages() {
+		TransactionService.getInstance()
+				.addTransaction(new TransactionItemBuilder().setTransactionId(203).setAmount(15).build());
+		TransactionService.getInstance()
+				.addTransaction(new TransactionItemBuilder().setTransactionId(204).setAmount(5).build());
+		NavigableMap<AmountIndexKey, TransactionItem> leaderRange = new TreeMap<>();
+		leaderRange.put(new AmountIndexKey(10, 201),
+				new TransactionItemBuilder().setTransactionId(201).setAmount(10).build());
+		leaderRange.put(new AmountIndexKey(20, 202),
+				new TransactionItemBuilder().setTransactionId(202).setAmount(20).setParentId(201).build());
+		ReplicationFollower follower = new ReplicationFollower("http://localhost:1", 100, 1);
+
+		JSONObject firstPage = exportSnapshotPage(leaderRange, 1);
+		follower.applyBatch(firstPage, System.currentTimeMillis());
+
+		assertFalse(follower.isCaughtUp());
+		assertEquals(0, follower.getAppliedSequence());
+		assertNotNull(TransactionService.getInstance().getTransactions().get(201l));
+		assertNull(TransactionService.getInstance().getTransactions().get(204l));
+		assertNotNull(TransactionService.getInstance().getTransactions().get(203l));
+
+		AmountIndexKey after = AmountIndexKey.fromCursor(firstPage.getString(JSONExporter.NEXT_CURSOR_PROPERTY));
+		JSONObject lastPage = exportSnapshotPage(leaderRange.tailMap(after, false), 1);
+		assertFalse(lastPage.has(JSONExporter.NEXT_CURSOR_PROPERTY));
+		follower.applyBatch(lastPage, System.currentTimeMillis());
+
+		assertTrue(follower.isCaughtUp());
+		assertEquals(leaderLog.getHeadSequence(), follower.getAppliedSequence());
+		assertEquals(leaderLog.getEpoch(), follower.getLeaderEpoch());
+		assertNotNull(TransactionService.getInstance().getTransactions().get(202l));
+		assertNull(TransactionService.getInstance().getTransactions().get(203l));
+	}
+
+	@Test
+	public void testFollowerPullsSnapshotPagesOverHttp() throws IOException, InterruptedException {
+		NavigableMap<AmountIndexKey, TransactionItem> leaderRange = new TreeMap<>();
+		leaderRange.put(new AmountIndexKey(10, 201),
+				new TransactionItemBuilder().setTransactionId(201).setAmount(10).build());
+		leaderRange.put(new AmountIndexKey(20, 202),
+				new TransactionItemBuilder().setTransactionId(202).setAmount(20).setParentId(201).build());
+		List<String> queries = new CopyOnWriteArrayList<>();
+		leader = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		leader.createContext(ReplicationFollower.LOG_PATH, exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			queries.add(query);
+			long fromSequence = Long.parseLong(query.replaceAll(".*from=(\\d+).*", "$1"));
+			List<ChangeLogEntry> entries = fromSequence == ReplicationFollower.SNAPSHOT_SEQUENCE ? null
+					: leaderLog.readFrom(fromSequence, 1);
+			JSONObject batch;
+			if (entries != null) {
+				batch = exportLog(entries, false);
+			} else if (query.contains("cursor=")) {
+				String cursor = query.replaceAll(".*cursor=([^&]+).*", "$1");
+				batch = exportSnapshotPage(leaderRange.tailMap(AmountIndexKey.fromCursor(cursor), false), 1);
+			} else {
+				batch = exportSnapshotPage(leaderRange, 1);
+			}
+			byte[] body = batch.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		});
+		leader.start();
+
+		ReplicationFollower follower = new ReplicationFollower(
+				"http://localhost:" + leader.getAddress().getPort(), 10, 1);
+		follower.applyBatch(exportLog(Collections.emptyList(), false), System.currentTimeMillis());
+		follower.applyBatch(exportLog(new ChangeLog(100), Collections.emptyList(), false),
+				System.currentTimeMillis());
+		Thread followerThread = new Thread(follower);
+		followerThread.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!follower.isCaughtUp() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			follower.stop();
+			followerThread.interrupt();
+			followerThread.join();
+		}
+
+		assertTrue(follower.isCaughtUp());
+		assertTrue(queries.get(0).startsWith("from=0&limit=1"));
+		assertTrue(queries.get(1).contains("head=" + leaderLog.getHeadSequence() + "&cursor="));
+		assertEquals(leaderLog.getHeadSequence(), follower.getAppliedSequence());
+		assertNotNull(TransactionService.getInstance().getTransactions().get(201l));
+		assertNotNull(TransactionService.getInstance().getTransactions().get(202l));
+	}
+
+	@Test
+	public void testFollowerPullsLeaderLogOverHttp() throws IOException, InterruptedException {
+		startLeader();
+
+		ReplicationFollower follower = new ReplicationFollower(
+				"http://localhost:" + leader.getAddress().getPort() + "/", 10, 1);
+		Thread followerThread = new Thread(follower);
+		followerThread.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!follower.isCaughtUp() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			follower.stop();
+			followerThread.interrupt();
+			followerThread.join();
+		}
+
+		assertTrue(follower.isCaughtUp());
+		assertEquals(2, follower.getAppliedSequence());
+		assertNotNull(TransactionService.getInstance().getTransactions().get(202l));
+	}
+
+	private void startLeader() throws IOException {
+		leader = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		leader.createContext(ReplicationFollower.LOG_PATH, exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			long fromSequence = Long.parseLong(query.replaceAll(".*from=(\\d+).*", "$1"));
+			byte[] body = exportLog(leaderLog.readFrom(fromSequence, 1), false).toString()
+					.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		});
+		leader.start();
+	}
+
+	@Test
+	public void testFollowerSurvivesFailureToApply() throws IOException, InterruptedException {
+		startLeader();
+		TransactionChangeListener failingListener = (transactionId, transaction) -> {
+			throw new IllegalStateException("apply failed");
+		};
+		TransactionService.getInstance().addChangeListener(failingListener);
+
+		ReplicationFollower follower = new ReplicationFollower(
+				"http://localhost:" + leader.getAddress().getPort() + "/", 10, 1);
+		Thread followerThread = new Thread(follower);
+		followerThread.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (follower.getLastError() == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(follower.getLastError().contains("apply failed"));
+			assertTrue(followerThread.isAlive());
+
+			TransactionService.getInstance().removeChangeListener(failingListener);
+			while (!follower.isCaughtUp() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			TransactionService.getInstance().removeChangeListener(failingListener);
+			follower.stop();
+			followerThread.interrupt();
+			followerThread.join();
+		}
+
+		assertTrue(follower.isCaughtUp());
+		assertNull(follower.getLastError());
+	}
+
+	@Test
+	public void testDropsBatchOfRestartedLeader() {
+		ReplicationFollower follower = new ReplicationFollower("http://localhost:1", 100, 10);
+		follower.applyBatch(exportLog(leaderLog.readFrom(1, 10), false), System.currentTimeMillis());
+
+		ChangeLog restartedLog = new ChangeLog(100);
+		for (int i = 0; i < 3; i++) {
+			restartedLog.append(202, new TransactionItemBuilder().setTransactionId(202).setAmount(99).build());
+		}
+		follower.applyBatch(exportLog(restartedLog, restartedLog.readFrom(3, 10), false), System.currentTimeMillis());
+
+		assertEquals(leaderLog.getEpoch(), follower.getLeaderEpoch());
+		assertEquals(2, follower.getAppliedSequence());
+		assertFalse(follower.isCaughtUp());
+		assertEquals(20, TransactionService.getInstance().getTransactions().get(202l).getAmount(), 0);
+	}
+
+	@Test
+	public void testResyncsFromSnapshotOfRestartedLeaderOverHttp() throws IOException, InterruptedException {
+		ChangeLog restartedLog = new ChangeLog(100);
+		restartedLog.append(201, new TransactionItemBuilder().setTransactionId(201).setAmount(11).build());
+		restartedLog.append(201, new TransactionItemBuilder().setTransactionId(201).setAmount(12).build());
+		restartedLog.append(201, new TransactionItemBuilder().setTransactionId(201).setAmount(13).build());
+		List<Long> requestedSequences = new CopyOnWriteArrayList<>();
+		leader = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		leader.createContext(ReplicationFollower.LOG_PATH, exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			long fromSequence = Long.parseLong(query.replaceAll(".*from=(\\d+).*", "$1"));
+			requestedSequences.add(fromSequence);
+			List<ChangeLogEntry> entries = restartedLog.readFrom(fromSequence, 10);
+			ChangeLogEntry snapshotEntry = new ChangeLogEntry(restartedLog.getHeadSequence(), 201,
+					new TransactionItemBuilder().setTransactionId(201).setAmount(13).build());
+			JSONObject batch = entries != null ? exportLog(restartedLog, entries, false)
+					: exportLog(restartedLog, Collections.singletonList(snapshotEntry), true);
+			byte[] body = batch.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		});
+		leader.start();
+
+		ReplicationFollower follower = new ReplicationFollower(
+				"http://localhost:" + leader.getAddress().getPort(), 10, 10);
+		follower.applyBatch(exportLog(leaderLog.readFrom(1, 10), false), System.currentTimeMillis());
+		Thread followerThread = new Thread(follower);
+		followerThread.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!restartedLog.getEpoch().equals(follower.getLeaderEpoch())
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			follower.stop();
+			followerThread.interrupt();
+			followerThread.join();
+		}
+
+		assertEquals(Long.valueOf(3), requestedSequences.get(0));
+		assertEquals(Long.valueOf(ReplicationFollower.SNAPSHOT_SEQUENCE), requestedSequences.get(1));
+		assertEquals(restartedLog.getEpoch(), follower.getLeaderEpoch());
+		assertEquals(13, TransactionService.getInstance().getTransactions().get(201l).getAmount(), 0);
+		assertNull(TransactionService.getInstance().getTransactions().get(202l));
+	}
+
+	private JSONObject exportLog(List<ChangeLogEntry> entries, boolean snapshot) {
+		return exportLog(leaderLog, entries, snapshot);
+	}
+
+	private JSONObject exportLog(ChangeLog log, List<ChangeLogEntry> entries, boolean snapshot) {
+		StringWriter writer = new StringWriter();
+		if (snapshot) {
+			NavigableMap<AmountIndexKey, TransactionItem> range = new TreeMap<>();
+			entries.forEach(entry -> range.put(
+					new AmountIndexKey(entry.getTransaction().getAmount(), entry.getTransactionId()),
+					entry.getTransaction()));
+			JSONExporter.getInstance().exportSnapshotToJSON(log.getEpoch(), log.getHeadSequence(), range,
+					range.size(), writer);
+		} else {
+			JSONExporter.getInstance().exportChangeLogToJSON(log.getEpoch(), log.getHeadSequence(),
+					entries.iterator(), writer);
+		}
+		return new JSONObject(writer.toString());
+	}
+
+	private JSONObject exportSnapshotPage(NavigableMap<AmountIndexKey, TransactionItem> range, int limit) {
+		StringWriter writer = new StringWriter();
+		JSONExporter.getInstance().exportSnapshotToJSON(leaderLog.getEpoch(), leaderLog.getHeadSequence(), range,
+				limit, writer);
+		return new JSONObject(writer.toString());
+	}
+}
@@ -0,0 +1,14 @@
+package transactionservice.tests.retention;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ HierarchicalTimerWheelTest.class, RetentionEvictorTest.class })
+public class AllRetentionTests {
+
+}
@@ -0,0 +1,103 @@
+package transactionservice.tests.retention;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.retention.HierarchicalTimerWheel;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class HierarchicalTimerWheelTest {
+	private static final long START_MILLIS = 1_000_000;
+
+	private HierarchicalTimerWheel<Long> wheel;
+	private List<Long> expired;
+
+	@Before
+	public void setUp() {
+		wheel = new HierarchicalTimerWheel<>(10, 4, 3, START_MILLIS);
+		expired = new ArrayList<>();
+	}
+
+	@Test
+	public void testExpiresNotBeforeDeadline() {
+		wheel.schedule(START_MILLIS + 25, 25l);
+
+		assertEquals(0, wheel.advance(START_MILLIS + 29, expired::add));
+		assertEquals(1, wheel.advance(START_MILLIS + 30, expired::add));
+		assertEquals(Arrays.asList(25l), expired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testExpiresPassedDeadlineOnNextAdvance() {
+		wheel.schedule(START_MILLIS - 100, 1l);
+
+		assertEquals(1, wheel.advance(START_MILLIS, expired::add));
+	}
+
+	@Test
+	public void testCascadesFromHigherLevels() {
+		// 4 slots of 10 ms on 3 levels reach 640 ms ahead
+		wheel.schedule(START_MILLIS + 630, 630l);
+		wheel.schedule(START_MILLIS + 170, 170l);
+
+		wheel.advance(START_MILLIS + 160, expired::add);
+		assertTrue(expired.isEmpty());
+		wheel.advance(START_MILLIS + 170, expired::add);
+		assertEquals(Arrays.asList(170l), expired);
+		wheel.advance(START_MILLIS + 620, expired::add);
+		assertEquals(1, expired.size());
+		wheel.advance(START_MILLIS + 630, expired::add);
+		assertEquals(Arrays.asList(170l, 630l), expired);
+	}
+
+	@Test
+	public void testKeepsDeadlinesBeyondHighestLevel() {
+		wheel.schedule(START_MILLIS + 5000, 5000l);
+
+		wheel.advance(START_MILLIS + 4990, expired::add);
+		assertTrue(expired.isEmpty());
+		assertEquals(1, wheel.size());
+		wheel.advance(START_MILLIS + 5000, expired::add);
+		assertEquals(Arrays.asList(5000l), expired);
+	}
+
+	@Test
+	public void testExpiresRandomDeadlinesInTime() {
+		Random random = new Random(42);
+		long[] deadlines = new long[1000];
+		for (int i = 0; i < deadlines.length; i++) {
+			deadlines[i] = START_MILLIS + random.nextInt(3000);
+			wheel.schedule(deadlines[i], (long) i);
+		}
+
+		long step = 7;
+		for (long now = START_MILLIS; now <= START_MILLIS + 3000 + step; now += step) {
+			long currentMillis = now;
+			wheel.advance(currentMillis, value -> {
+				long deadline = deadlines[value.intValue()];
+				assertTrue(currentMillis >= deadline);
+				assertTrue(currentMillis < deadline + 10 + step);
+				expired.add(value);
+			});
+		}
+
+		assertEquals(deadlines.length, expired.size());
+		assertEquals(0, wheel.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsWheelSizeWhichIsNotPowerOfTwo() {
+		new HierarchicalTimerWheel<Long>(10, 6, 3, START_MILLIS);
+	}
+}
@@ -0,0 +1,164 @@
+package transactionservice.tests.retention;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import transactionservice.model.TransactionItem;
+import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.retention.RetentionEvictor;
+import transactionservice.retention.RetentionPolicy;
+import transactionservice.service.TransactionChangeListener;
+import transactionservice.service.TransactionService;
+
+/**
+ * @author Ekaterina Lobanova
+ */
+public class RetentionEvictorTest {
+	private static final long FIRST_ID = 10_000_000;
+	private static final long HOUR_MILLIS = 3_600_000;
+	private static final String SHORT_TYPE = "retentionShortType";
+	private static final String LONG_TYPE = "retentionLongType";
+
+	private RetentionEvictor evictor;
+	private long now;
+
+	@Before
+	public void setUp() {
+		now = System.currentTimeMillis();
+		evictor = new RetentionEvictor(RetentionPolicy.parse(10 * HOUR_MILLIS, SHORT_TYPE + "=" + HOUR_MILLIS), 10);
+		TransactionService.getInstance().addChangeListener(evictor);
+	}
+
+	@After
+	public void tearDown() {
+		TransactionService.getInstance().removeChangeListener(evictor);
+		for (long id = FIRST_ID; id < FIRST_ID + 10; id++) {
+			TransactionService.getInstance().removeTransaction(id);
+		}
+	}
+
+	@Test
+	public void testStampsIngestTime() {
+		TransactionItem transaction = new TransactionItemBuilder().setTransactionId(FIRST_ID).setAmount(1).build();
+		TransactionService.getInstance().addTransaction(transaction);
+
+		assertTrue(transaction.getIngestTime() >= now);
+	}
+
+	@Test
+	public void testEvictsByTypeRetention() {
+		add(FIRST_ID, 0, SHORT_TYPE, 2 * HOUR_MILLIS);
+		add(FIRST_ID + 1, 0, LONG_TYPE, 2 * HOUR_MILLIS);
+
+		assertEquals(1, evictor.evictExpired(now));
+		assertNull(TransactionService.getInstance().getTransactions().get(FIRST_ID));
+		assertTrue(TransactionService.getInstance().getTransactions().containsKey(FIRST_ID + 1));
+		assertTrue(TransactionService.getInstance().getTransactionsInAmountRange(0, 100, SHORT_TYPE, null).isEmpty());
+	}
+
+	@Test
+	public void testDoesNotEvictTransactionStoredAgain() {
+		add(FIRST_ID, 0, SHORT_TYPE, 2 * HOUR_MILLIS);
+		add(FIRST_ID, 0, SHORT_TYPE, 0);
+
+		assertEquals(0, evictor.evictExpired(now));
+		assertTrue(TransactionService.getInstance().getTransactions().containsKey(FIRST_ID));
+	}
+
+	@Test
+	public void testDoesNotEvictTransactionStoredAgainWithinMillisecond() {
+		add(FIRST_ID, 0, SHORT_TYPE, 2 * HOUR_MILLIS);
+		add(FIRST_ID, 0, LONG_TYPE, 2 * HOUR_MILLIS);
+
+		assertEquals(0, evictor.evictExpired(now));
+		assertEquals(LONG_TYPE, TransactionService.getInstance().getTransactions().get(FIRST_ID).getType());
+	}
+
+	@Test
+	public void testRelinksChildrenOfEvictedTransaction() {
+		add(FIRST_ID, 0, LONG_TYPE, 0);
+		add(FIRST_ID + 1, FIRST_ID, SHORT_TYPE, 2 * HOUR_MILLIS);
+		add(FIRST_ID + 2, FIRST_ID + 1, LONG_TYPE, 0);
+		add(FIRST_ID + 3, FIRST_ID + 2, LONG_TYPE, 0);
+
+		assertEquals(1, evictor.evictExpired(now));
+
+		TransactionItem child = TransactionService.getInstance().getTransactions().get(FIRST_ID + 2);
+		assertEquals(FIRST_ID, child.getParentId());
+		assertEquals(now, child.getIngestTime());
+		assertEquals(10 + 10, TransactionService.getInstance().getSumOfTransactionsLinkedTo(FIRST_ID), 0);
+		assertTrue(TransactionService.getInstance().isAncestorOf(FIRST_ID,
+				TransactionService.getInstance().getTransactions().get(FIRST_ID + 3)));
+	}
+
+	@Test
+	public void testRelinksChildrenBeforeRemoval() {
+		add(FIRST_ID, 0, LONG_TYPE, 0);
+		add(FIRST_ID + 1, FIRST_ID, SHORT_TYPE, 2 * HOUR_MILLIS);
+		add(FIRST_ID + 2, FIRST_ID + 1, LONG_TYPE, 0);
+		List<String> changes = new ArrayList<>();
+		TransactionChangeListener recorder = (transactionId, transaction) -> changes
+				.add(transactionId + (transaction == null ? " removed" : " parent " + transaction.getParentId()));
+		TransactionService.getInstance().addChangeListener(recorder);
+		try {
+			evictor.evictExpired(now);
+		} finally {
+			TransactionService.getInstance().removeChangeListener(recorder);
+		}
+
+		// every state in between keeps the child linked to the root
+		assertEquals(Arrays.asList((FIRST_ID + 2) + " parent " + FIRST_ID, (FIRST_ID + 1) + " removed"), changes);
+	}
+
+	@Test
+	public void testRelinkedChildrenExpireAsBefore() {
+		add(FIRST_ID, 0, SHORT_TYPE, 2 * HOUR_MILLIS);
+		add(FIRST_ID + 1, FIRST_ID, SHORT_TYPE, 2 * HOUR_MILLIS);
+
+		assertEquals(2, evictor.evictExpired(now));
+		assertTrue(TransactionService.getInstance().getTransactionsByIds(Arrays.asList(FIRST_ID, FIRST_ID + 1))
+				.isEmpty());
+	}
+
+	@Test
+	public void testSchedulesStoredTransactions() {
+		TransactionService.getInstance().removeChangeListener(evictor);
+		add(FIRST_ID, 0, SHORT_TYPE, 2 * HOUR_MILLIS);
+		TransactionService.getInstance().addChangeListener(evictor);
+
+		assertEquals(0, evictor.evictExpired(now));
+		evictor.scheduleStoredTransactions();
+		assertEquals(1, evictor.evictExpired(now));
+	}
+
+	@Test
+	public void testPolicyKeepsTypesWithoutRetention() {
+		RetentionPolicy policy = RetentionPolicy.parse(RetentionPolicy.KEEP_FOREVER, "a=5, b=0");
+
+		assertEquals(5, policy.getRetentionMillis("a"));
+		assertEquals(RetentionPolicy.KEEP_FOREVER, policy.getRetentionMillis("c"));
+		assertEquals(RetentionPolicy.KEEP_FOREVER, policy.getRetentionMillis(null));
+		assertTrue(policy.isAnyRetention());
+		assertFalse(RetentionPolicy.parse(RetentionPolicy.KEEP_FOREVER, "b=0").isAnyRetention());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPolicyRejectsMalformedPeriod() {
+		RetentionPolicy.parse(HOUR_MILLIS, "a=hour");
+	}
+
+	private void add(long id, long parentId, String type, long age) {
+		TransactionService.getInstance().addTransaction(new TransactionItemBuilder().setTransactionId(id)
+				.setParentId(parentId).setType(type).setAmount(10).setIngestTime(now - age).build());
+	}
+}
@@ -5,6 +5,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 
 import org.junit.Before;
@@ -12,6 +18,8 @@ import org.junit.Test;
 
 import transactionservice.model.TransactionItem;
 import transactionservice.model.TransactionItem.TransactionItemBuilder;
+import transactionservice.service.AmountIndexKey;
+import transactionservice.service.TransactionChangeListener;
 import transactionservice.service.TransactionService;
 
 /**
@@ -21,6 +29,7 @@ public class TransactionServiceTest {
 
 	private static final String PRESENT_TYPE = "presentType";
 	private static final String EMPTY_ID_TYPE = "emptyId";
+	private static final String RANGE_TYPE = "rangeType";
 
 	private TransactionItem childOfSecondItem;
 	private TransactionItem childOfFifthItem;
@@ -124,4 +133,155 @@ public class TransactionServiceTest {
 
 		assertEquals(expectedSum, actualSum, 0);
 	}
+
+	@Test
+	public void testGetTransactionsInAmountRangeOfType() {
+		addRangeTransactionItems();
+
+		NavigableMap<AmountIndexKey, TransactionItem> range = TransactionService.getInstance()
+				.getTransactionsInAmountRange(20, 40, RANGE_TYPE, null);
+
+		List<Long> actualIds = new ArrayList<>();
+		range.values().forEach(transactionItem -> actualIds.add(transactionItem.getTransactionId()));
+		assertEquals(3, actualIds.size());
+		assertEquals(Long.valueOf(103), actualIds.get(0));
+		assertEquals(Long.valueOf(101), actualIds.get(1));
+		assertEquals(Long.valueOf(102), actualIds.get(2));
+	}
+
+	@Test
+	public void testGetTransactionsInAmountRangeAfterCursor() {
+		addRangeTransactionItems();
+
+		NavigableMap<AmountIndexKey, TransactionItem> firstPage = TransactionService.getInstance()
+				.getTransactionsInAmountRange(20, 40, RANGE_TYPE, null);
+		AmountIndexKey cursor = AmountIndexKey.fromCursor(firstPage.firstKey().toCursor());
+		NavigableMap<AmountIndexKey, TransactionItem> secondPage = TransactionService.getInstance()
+				.getTransactionsInAmountRange(20, 40, RANGE_TYPE, cursor);
+
+		assertEquals(2, secondPage.size());
+		assertEquals(101, secondPage.firstKey().getTransactionId());
+	}
+
+	@Test
+	public void testGetTransactionsInAmountRangeAfterReplace() {
+		addRangeTransactionItems();
+		TransactionItem replacement = new TransactionItemBuilder().setTransactionId(101).setAmount(1000)
+				.setType(RANGE_TYPE).build();
+		TransactionService.getInstance().replace(101, replacement);
+
+		NavigableMap<AmountIndexKey, TransactionItem> range = TransactionService.getInstance()
+				.getTransactionsInAmountRange(20, 40, RANGE_TYPE, null);
+		assertEquals(2, range.size());
+		assertFalse(range.containsKey(new AmountIndexKey(30, 101)));
+		assertTrue(TransactionService.getInstance().getTransactionsInAmountRange(1000, 1000, null, null)
+				.containsKey(new AmountIndexKey(1000, 101)));
+	}
+
+	@Test
+	public void testGetTransactionsInAmountRangeWhenEmpty() {
+		assertTrue(TransactionService.getInstance().getTransactionsInAmountRange(40, 20, null, null).isEmpty());
+		assertTrue(TransactionService.getInstance().getTransactionsInAmountRange(0, 100, "absentType", null)
+				.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAmountIndexKeyFromMalformedCursor() {
+		AmountIndexKey.fromCursor("notACursor");
+	}
+
+	@Test
+	public void testGetTransactionsByIds() {
+		Map<Long, TransactionItem> foundTransactions = TransactionService.getInstance()
+				.getTransactionsByIds(Arrays.asList(6l, 999l, 5l));
+
+		assertEquals(2, foundTransactions.size());
+		assertEquals(Arrays.asList(6l, 5l), new ArrayList<>(foundTransactions.keySet()));
+		assertEquals(childOfSecondItem, foundTransactions.get(5l));
+	}
+
+	@Test
+	public void testVisitSubtree() {
+		Map<Long, Double> sums = new HashMap<>();
+		long visitedCount = TransactionService.getInstance().visitSubtree(2,
+				(transactionId, transaction, sum) -> sums.put(transactionId, sum));
+
+		assertEquals(3, visitedCount);
+		assertEquals(4, sums.size());
+		assertEquals(230, sums.get(2l), 0);
+		assertEquals(50, sums.get(5l), 0);
+		assertEquals(0, sums.get(6l), 0);
+		assertEquals(0, sums.get(4l), 0);
+	}
+
+	@Test
+	public void testGetSumOfTransactionsLinkedToAfterParentChange() {
+		TransactionItem movedItem = new TransactionItemBuilder().setTransactionId(6).setParentId(3).setAmount(50)
+				.build();
+		TransactionService.getInstance().replace(6, movedItem);
+
+		assertEquals(180, TransactionService.getInstance().getSumOfTransactionsLinkedTo(2), 0);
+		assertEquals(50, TransactionService.getInstance().getSumOfTransactionsLinkedTo(3), 0);
+	}
+
+	@Test
+	public void testGetSumOfTransactionsLinkedToInCycle() {
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(401).setParentId(402).setAmount(1).build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(402).setParentId(401).setAmount(2).build());
+		try {
+			assertEquals(2, TransactionService.getInstance().getSumOfTransactionsLinkedTo(401), 0);
+		} finally {
+			TransactionService.getInstance().removeTransaction(401);
+			TransactionService.getInstance().removeTransaction(402);
+		}
+	}
+
+	@Test
+	public void testGetSumOfTransactionsLinkedToDeepChain() {
+		long firstId = 1_000_000;
+		int chainLength = 100_000;
+		for (long id = firstId; id < firstId + chainLength; id++) {
+			TransactionService.getInstance().addTransaction(
+					new TransactionItemBuilder().setTransactionId(id).setParentId(id - 1).setAmount(1).build());
+		}
+		try {
+			assertEquals(chainLength - 1, TransactionService.getInstance().getSumOfTransactionsLinkedTo(firstId), 0);
+		} finally {
+			for (long id = firstId; id < firstId + chainLength; id++) {
+				TransactionService.getInstance().removeTransaction(id);
+			}
+		}
+	}
+
+	@Test
+	public void testPutIfAbsentAndReplaceOfSameInstanceNotifyOnce() {
+		List<Long> changedIds = new ArrayList<>();
+		TransactionChangeListener listener = (transactionId, transaction) -> changedIds.add(transactionId);
+		TransactionService.getInstance().addChangeListener(listener);
+		try {
+			TransactionItem transaction = new TransactionItemBuilder().setTransactionId(501).setAmount(1).build();
+			TransactionService.getInstance().putIfAbsent(501, transaction);
+			TransactionService.getInstance().replace(501, transaction);
+
+			assertEquals(Arrays.asList(501l), changedIds);
+		} finally {
+			TransactionService.getInstance().removeChangeListener(listener);
+			TransactionService.getInstance().removeTransaction(501);
+		}
+	}
+
+	private void addRangeTransactionItems() {
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(101).setAmount(30).setType(RANGE_TYPE).build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(102).setAmount(30).setType(RANGE_TYPE).build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(103).setAmount(20).setType(RANGE_TYPE).build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(104).setAmount(50).setType(RANGE_TYPE).build());
+		TransactionService.getInstance().addTransaction(
+				new TransactionItemBuilder().setTransactionId(105).setAmount(30).setType("otherRangeType").build());
+	}
 }